@@ -4,11 +4,19 @@ import com.magicbili.islandnpc.api.HologramProvider;
 import com.magicbili.islandnpc.api.IslandProvider;
 import com.magicbili.islandnpc.api.NpcProvider;
 import com.magicbili.islandnpc.commands.IslandNpcCommand;
+import com.magicbili.islandnpc.config.ConfigDiff;
 import com.magicbili.islandnpc.config.ConfigManager;
+import com.magicbili.islandnpc.config.ConfigSnapshot;
+import com.magicbili.islandnpc.config.ConfigWatcher;
 import com.magicbili.islandnpc.hologram.HologramProviderFactory;
+import com.magicbili.islandnpc.npc.NpcEventLog;
 import com.magicbili.islandnpc.npc.NpcProviderFactory;
+import com.magicbili.islandnpc.npc.NpcReleaseStats;
+import com.magicbili.islandnpc.npc.NpcSpawnQueue;
 import com.magicbili.islandnpc.providers.BentoBoxProvider;
 import com.magicbili.islandnpc.providers.SuperiorSkyblockProvider;
+import com.magicbili.islandnpc.storage.IslandNpcRecord;
+import com.magicbili.islandnpc.utils.DebugLogger;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -25,14 +33,25 @@ public class IslandNpcPlugin extends JavaPlugin {
     private NpcProvider npcProvider;
     private IslandProvider islandProvider;
     private HologramProvider hologramProvider;
+    private NpcSpawnQueue spawnQueue;
+    private StartupCoordinator startupCoordinator;
+    private final NpcReleaseStats releaseStats = new NpcReleaseStats();
+    private NpcEventLog eventLog;
+    private ConfigWatcher configWatcher;
+    private final DebugLogger debugLog = new DebugLogger(this, DebugLogger.Category.STARTUP, "");
 
     @Override
     public void onEnable() {
         instance = this;
 
+        // 逐个 NPC 的事件日志由后台线程按秒汇总输出
+        eventLog = new NpcEventLog(getLogger());
+        eventLog.start();
+
         // 初始化配置
         configManager = new ConfigManager(this);
         configManager.loadConfig();
+        configManager.loadNpcData();
 
         // 初始化岛屿提供者
         islandProvider = initializeIslandProvider();
@@ -62,13 +81,27 @@ public class IslandNpcPlugin extends JavaPlugin {
         // 注册指令
         registerCommands();
         
-        // 延迟加载所有已存在的 NPC
-        Bukkit.getScheduler().runTaskLater(this, () -> {
-            if (configManager.isDebugEnabled()) {
-                getLogger().info("[DEBUG] 开始加载已存在世界中的 NPC...");
-            }
+        // 所有依赖就绪后立即加载已存在的 NPC
+        // 不等待NPC数据加载：就绪后加载的世界可以先通过索引恢复，全部NPC在数据加载完成后恢复
+        startupCoordinator = new StartupCoordinator(this);
+        startupCoordinator.require(islandProvider.getProviderName(), islandProvider::isReady);
+        startupCoordinator.require(npcProvider.getProviderName(), npcProvider::isReady);
+        if (hologramProvider != null) {
+            startupCoordinator.require(hologramProvider.getProviderName(), hologramProvider::isReady);
+        }
+        startupCoordinator.onReady(() -> configManager.whenNpcDataLoaded(() -> {
+            // 岛屿数据中的记录需要岛屿插件就绪后才能读取
+            configManager.loadIslandNpcData();
+            debugLog.debug("开始加载已存在世界中的 NPC...");
             loadAllExistingNpcs();
-        }, 100L);
+        }));
+        startupCoordinator.start();
+
+        // 监听 config.yml 修改，保存后自动按差异重载
+        if (configManager.isWatchConfig()) {
+            configWatcher = new ConfigWatcher(this);
+            configWatcher.start();
+        }
 
         // 统一输出启用信息
         getLogger().info("插件已启用 (v" + getDescription().getVersion() + ")");
@@ -83,6 +116,16 @@ public class IslandNpcPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (configWatcher != null) {
+            configWatcher.shutdown();
+        }
+        if (startupCoordinator != null) {
+            startupCoordinator.cancel();
+        }
+        if (spawnQueue != null) {
+            spawnQueue.cancel();
+        }
+
         // 清理全息图提供者
         if (hologramProvider != null) {
             hologramProvider.cleanup();
@@ -94,6 +137,14 @@ public class IslandNpcPlugin extends JavaPlugin {
             npcProvider.cleanup();
             getLogger().info("已保存 " + npcProvider.getProviderName() + " NPC 数据");
         }
+        
+        if (configManager != null) {
+            configManager.closeNpcData();
+        }
+
+        if (eventLog != null) {
+            eventLog.shutdown();
+        }
 
         getLogger().info("IslandNpc 插件已禁用！");
     }
@@ -126,6 +177,11 @@ public class IslandNpcPlugin extends JavaPlugin {
             getServer().getPluginManager().registerEvents(islandProvider.getEventListener(), this);
         }
         
+        // 注册NPC提供者的事件监听器
+        if (npcProvider != null && npcProvider.getEventListener() != null) {
+            getServer().getPluginManager().registerEvents(npcProvider.getEventListener(), this);
+        }
+        
         // 注册 NPC 交互监听器
         com.magicbili.islandnpc.listeners.NpcInteractionHandler handler = 
             new com.magicbili.islandnpc.listeners.NpcInteractionHandler(this);
@@ -152,6 +208,13 @@ public class IslandNpcPlugin extends JavaPlugin {
             }
         }
         
+        // 区块懒加载模式：只在区块加载时生成NPC
+        if (configManager.isLazyChunkLoading()) {
+            getServer().getPluginManager().registerEvents(
+                new com.magicbili.islandnpc.listeners.ChunkNpcListener(this), this);
+            getLogger().info("已启用区块懒加载NPC模式");
+        }
+        
         // 世界加载监听器
         try {
             Class.forName("com.infernalsuite.asp.api.events.LoadSlimeWorldEvent");
@@ -176,13 +239,25 @@ public class IslandNpcPlugin extends JavaPlugin {
 
     /**
      * 重载插件配置
+     * 按重载前后配置快照的差异只更新受影响的NPC和全息图（/islandnpc reload 和配置文件监听共用）
      */
     public void reloadPlugin() {
+        ConfigSnapshot previous = configManager.getSnapshot();
         configManager.loadConfig();
+        ConfigDiff diff = ConfigDiff.between(previous, configManager.getSnapshot());
+        if (diff.isEmpty()) {
+            getLogger().info("插件配置已重载（没有变化）");
+            return;
+        }
+        
+        // 只应用变化的部分，不再重新生成所有NPC
         if (npcProvider != null) {
-            npcProvider.reloadAllNpcs();
+            npcProvider.applyConfigChanges(diff);
         }
-        getLogger().info("插件配置已重载");
+        for (String key : diff.getRestartRequiredKeys()) {
+            getLogger().warning("配置项 " + key + " 已修改，需要重启服务器才能生效");
+        }
+        getLogger().info("插件配置已重载，变化的配置: " + String.join(", ", diff.getChangedKeys()));
     }
 
     public static IslandNpcPlugin getInstance() {
@@ -201,9 +276,21 @@ public class IslandNpcPlugin extends JavaPlugin {
         return islandProvider;
     }
     
+    public StartupCoordinator getStartupCoordinator() {
+        return startupCoordinator;
+    }
+    
+    public NpcReleaseStats getReleaseStats() {
+        return releaseStats;
+    }
+    
+    public NpcEventLog getEventLog() {
+        return eventLog;
+    }
+    
     /**
      * 加载所有当前已加载世界中的 NPC
-     * 在插件启动时调用，延迟 5 秒确保所有插件和世界都已加载
+     * 在插件启动时由 StartupCoordinator 在所有依赖就绪后调用
      * 
      * 优化策略（性能优化版本）：
      * 1. 直接跳过所有标记为 SlimeWorld 的岛屿（无需判断世界是否加载）
@@ -212,11 +299,8 @@ public class IslandNpcPlugin extends JavaPlugin {
      * 4. 性能提升：减少世界加载状态检查，启动更快
      */
     private void loadAllExistingNpcs() {
-        org.bukkit.configuration.ConfigurationSection section = configManager.getNpcDataConfig().getConfigurationSection("npcs");
-        if (section == null) {
-            if (configManager.isDebugEnabled()) {
-                getLogger().info("[DEBUG] 配置中没有 npcs 节点，无需加载");
-            }
+        if (configManager.getNpcRecords().size() == 0) {
+            debugLog.debug("没有岛屿NPC记录，无需加载");
             return;
         }
         
@@ -226,18 +310,19 @@ public class IslandNpcPlugin extends JavaPlugin {
             loadedWorldNames.add(world.getName());
         }
         
-        if (configManager.isDebugEnabled()) {
-            getLogger().info("[DEBUG] 当前已加载 " + loadedWorldNames.size() + " 个世界");
+        if (debugLog.isEnabled()) {
+            debugLog.debug("当前已加载 {} 个世界", loadedWorldNames.size());
         }
         
-        int loadedCount = 0;
+        java.util.List<java.util.UUID> toSpawn = new java.util.ArrayList<>();
         int skippedSlimeWorld = 0;
         int skippedUnloaded = 0;
         
-        for (String key : section.getKeys(false)) {
+        for (IslandNpcRecord record : configManager.getNpcRecords().getAll()) {
+            java.util.UUID islandUUID = record.getIslandUUID();
+            String key = islandUUID.toString();
             try {
-                java.util.UUID islandUUID = java.util.UUID.fromString(key);
-                String worldName = section.getString(key + ".location.world");
+                String worldName = record.getWorldName();
                 
                 if (worldName == null) {
                     getLogger().warning("岛屿 " + key + " 的世界名称为空，跳过");
@@ -245,17 +330,17 @@ public class IslandNpcPlugin extends JavaPlugin {
                 }
                 
                 // 优化：直接跳过 SlimeWorld，无需任何判断
-                // 注意：如果配置中没有 is_slimeworld 字段（旧数据），需要动态检测
+                // 注意：如果记录中没有 is_slimeworld 标记（旧数据），需要动态检测
                 boolean isSlimeWorld;
-                if (section.contains(key + ".is_slimeworld")) {
-                    isSlimeWorld = section.getBoolean(key + ".is_slimeworld");
+                if (record.getSlimeWorld() != null) {
+                    isSlimeWorld = record.getSlimeWorld();
                 } else {
                     // 旧数据没有标记，检查世界是否已加载来判断
                     org.bukkit.World world = Bukkit.getWorld(worldName);
                     if (world != null) {
                         isSlimeWorld = com.magicbili.islandnpc.utils.WorldUtils.isSlimeWorld(world);
-                        if (configManager.isDebugEnabled()) {
-                            getLogger().info("[DEBUG] 岛屿 " + key + " 缺少 is_slimeworld 标记，动态检测结果: " + isSlimeWorld);
+                        if (debugLog.isEnabled()) {
+                            debugLog.debug("岛屿 {} 缺少 is_slimeworld 标记，动态检测结果: {}", key, isSlimeWorld);
                         }
                     } else {
                         // 世界未加载，无法判断，假定为普通世界（由世界加载事件处理）
@@ -264,46 +349,49 @@ public class IslandNpcPlugin extends JavaPlugin {
                 }
                 
                 if (isSlimeWorld) {
-                    if (configManager.isDebugEnabled()) {
-                        getLogger().info("[DEBUG] 跳过 SlimeWorld 岛屿: " + worldName + " (将由世界加载事件处理)");
-                    }
+                    debugLog.debug("跳过 SlimeWorld 岛屿: {} (将由世界加载事件处理)", worldName);
                     skippedSlimeWorld++;
                     continue;
                 }
                 
                 // 只处理已加载的普通世界
                 if (!loadedWorldNames.contains(worldName)) {
-                    if (configManager.isDebugEnabled()) {
-                        getLogger().info("[DEBUG] 世界未加载，跳过: " + worldName + " (将由世界加载事件处理)");
-                    }
+                    debugLog.debug("世界未加载，跳过: {} (将由世界加载事件处理)", worldName);
                     skippedUnloaded++;
                     continue;
                 }
                 
-                // 使用 NPC 提供者重新创建 NPC
-                if (npcProvider != null && npcProvider.recreateNpc(islandUUID)) {
-                    loadedCount++;
+                // 懒加载模式：区块未加载时由区块加载事件处理
+                if (configManager.isLazyChunkLoading()
+                        && !Bukkit.getWorld(worldName).isChunkLoaded(record.getChunkX(), record.getChunkZ())) {
+                    skippedUnloaded++;
+                    continue;
                 }
-            } catch (IllegalArgumentException e) {
-                getLogger().warning("无效的岛屿UUID: " + key);
+                
+                // 加入分帧生成队列，由 NpcSpawnQueue 按 tick 预算重新创建
+                toSpawn.add(islandUUID);
             } catch (Exception e) {
                 getLogger().severe("加载岛屿 " + key + " 的 NPC 时发生错误: " + e.getMessage());
                 e.printStackTrace();
             }
         }
         
-        if (loadedCount > 0) {
-            getLogger().info("成功加载了 " + loadedCount + " 个已加载世界的 NPC");
+        if (!toSpawn.isEmpty() && npcProvider != null) {
+            if (spawnQueue == null) {
+                spawnQueue = new NpcSpawnQueue(this);
+            }
+            spawnQueue.enqueueAll(toSpawn);
+            spawnQueue.start();
         }
-        if (configManager.isDebugEnabled()) {
+        if (debugLog.isEnabled()) {
             if (skippedSlimeWorld > 0) {
-                getLogger().info("[DEBUG] 跳过了 " + skippedSlimeWorld + " 个 SlimeWorld 岛屿（性能优化：直接跳过）");
+                debugLog.debug("跳过了 {} 个 SlimeWorld 岛屿（性能优化：直接跳过）", skippedSlimeWorld);
             }
             if (skippedUnloaded > 0) {
-                getLogger().info("[DEBUG] 跳过了 " + skippedUnloaded + " 个未加载的普通世界");
+                debugLog.debug("跳过了 {} 个未加载的普通世界", skippedUnloaded);
             }
-            if (loadedCount == 0 && skippedSlimeWorld == 0 && skippedUnloaded == 0) {
-                getLogger().info("[DEBUG] 没有需要加载的 NPC");
+            if (toSpawn.isEmpty() && skippedSlimeWorld == 0 && skippedUnloaded == 0) {
+                debugLog.debug("没有需要加载的 NPC");
             }
         }
     }
@@ -0,0 +1,132 @@
+package com.magicbili.islandnpc;
+
+import com.magicbili.islandnpc.utils.DebugLogger;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 启动协调器
+ * 等待所有依赖插件真正就绪（NPC 注册表加载、岛屿数据加载、全息图插件启用）后
+ * 立即执行启动任务，取代固定的延迟；超过等待时间后仍会继续启动
+ *
+ * @author magicbili
+ */
+public class StartupCoordinator {
+
+    private static final long CHECK_INTERVAL_TICKS = 5L;
+
+    private final IslandNpcPlugin plugin;
+    private final DebugLogger debugLog;
+    private final Map<String, BooleanSupplier> conditions = new LinkedHashMap<>();
+    private final List<Runnable> readyTasks = new ArrayList<>();
+    private BukkitTask task;
+    private long startNanos;
+    private boolean ready = false;
+
+    public StartupCoordinator(IslandNpcPlugin plugin) {
+        this.plugin = plugin;
+        this.debugLog = new DebugLogger(plugin, DebugLogger.Category.STARTUP, "");
+    }
+
+    /**
+     * 添加一个就绪条件
+     * @param name 条件名称（用于日志）
+     * @param condition 就绪时返回 true，在主线程调用
+     */
+    public void require(String name, BooleanSupplier condition) {
+        conditions.put(name, condition);
+    }
+
+    /**
+     * 添加所有条件就绪后执行的任务
+     */
+    public void onReady(Runnable runnable) {
+        if (ready) {
+            runnable.run();
+        } else {
+            readyTasks.add(runnable);
+        }
+    }
+
+    /**
+     * 开始等待，立即检查一次，之后每隔几 tick 检查
+     */
+    public void start() {
+        if (task != null || ready) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        if (!check()) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::check, CHECK_INTERVAL_TICKS, CHECK_INTERVAL_TICKS);
+        }
+    }
+
+    /**
+     * 停止等待，不再执行启动任务
+     */
+    public void cancel() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        readyTasks.clear();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private boolean check() {
+        List<String> waiting = new ArrayList<>();
+        for (Map.Entry<String, BooleanSupplier> entry : conditions.entrySet()) {
+            boolean satisfied;
+            try {
+                satisfied = entry.getValue().getAsBoolean();
+            } catch (Exception e) {
+                satisfied = false;
+            }
+            if (!satisfied) {
+                waiting.add(entry.getKey());
+            }
+        }
+
+        long elapsed = System.nanoTime() - startNanos;
+        if (waiting.isEmpty()) {
+            if (debugLog.isEnabled()) {
+                debugLog.debug("所有依赖已就绪，用时 {} ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        } else if (elapsed >= TimeUnit.SECONDS.toNanos(plugin.getConfigManager().getStartupTimeout())) {
+            plugin.getLogger().warning("等待依赖就绪超时，继续启动。未就绪: " + String.join(", ", waiting));
+        } else {
+            return false;
+        }
+
+        finish();
+        return true;
+    }
+
+    private void finish() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        ready = true;
+        List<Runnable> tasks = new ArrayList<>(readyTasks);
+        readyTasks.clear();
+        for (Runnable runnable : tasks) {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                plugin.getLogger().severe("启动任务执行失败: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package com.magicbili.islandnpc.api;
 
 import com.magicbili.islandnpc.IslandNpcPlugin;
+import com.magicbili.islandnpc.npc.IslandHandleRegistry;
+import com.magicbili.islandnpc.storage.IslandNpcRecord;
+import com.magicbili.islandnpc.utils.DebugLogger;
+import com.magicbili.islandnpc.utils.WorldUtils;
 import org.bukkit.Location;
 import org.bukkit.event.Listener;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -17,12 +23,17 @@ import java.util.UUID;
 public abstract class AbstractNpcProvider implements NpcProvider {
     
     protected final IslandNpcPlugin plugin;
-    protected final Map<UUID, Boolean> hiddenNpcs;
+    protected final DebugLogger debugLog;
+    // 岛屿句柄，子类按句柄在数组中保存NPC ID等状态
+    protected final IslandHandleRegistry islandHandles = new IslandHandleRegistry();
+    // 按句柄保存的隐藏状态：hiddenKnown 未设置时回退读取记录
+    private final BitSet hiddenKnown = new BitSet();
+    private final BitSet hidden = new BitSet();
     protected HologramProvider hologramProvider;
     
     public AbstractNpcProvider(IslandNpcPlugin plugin) {
         this.plugin = plugin;
-        this.hiddenNpcs = new HashMap<>();
+        this.debugLog = new DebugLogger(plugin, DebugLogger.Category.NPC, "[" + getProviderName() + "] ");
         this.hologramProvider = null; // 将在子类中初始化
     }
     
@@ -48,21 +59,12 @@ public abstract class AbstractNpcProvider implements NpcProvider {
         if (hologramProvider != null && plugin.getIslandProvider() != null) {
             String ownerName = plugin.getIslandProvider().getIslandOwnerName(islandUUID);
             if (ownerName != null) {
-                // 从配置读取全息图文本行
-                java.util.List<String> lines = plugin.getConfigManager().getConfig().getStringList("npc.hologram.lines");
-                if (lines.isEmpty()) {
-                    lines = java.util.List.of("§b§l" + ownerName + " 的岛屿", "§7右键点击交互");
-                }
-                
-                // 替换占位符
-                java.util.List<String> finalLines = new java.util.ArrayList<>();
-                for (String line : lines) {
-                    finalLines.add(line.replace("{owner}", ownerName));
-                }
+                com.magicbili.islandnpc.config.ConfigSnapshot snapshot = plugin.getConfigManager().getSnapshot();
+                // 预拆分的文本模板，直接拼接岛主名称
+                java.util.List<String> finalLines = snapshot.renderHologramLines(ownerName);
                 
                 // 计算全息图位置
-                double yOffset = plugin.getConfigManager().getConfig().getDouble("npc.hologram.position.y-offset", 2.8);
-                org.bukkit.Location hologramLoc = location.clone().add(0, yOffset, 0);
+                org.bukkit.Location hologramLoc = location.clone().add(0, snapshot.getHologramYOffset(), 0);
                 
                 String id = "island_" + islandUUID.toString();
                 boolean success = false;
@@ -70,15 +72,15 @@ public abstract class AbstractNpcProvider implements NpcProvider {
                 // 如果是FancyHolograms,应用背景设置
                 if (hologramProvider instanceof com.magicbili.islandnpc.hologram.FancyHologramsProvider) {
                     success = ((com.magicbili.islandnpc.hologram.FancyHologramsProvider) hologramProvider)
-                        .createIslandHologramWithBackground(id, hologramLoc, finalLines, plugin.getConfigManager().getConfig());
+                        .createIslandHologramWithBackground(id, hologramLoc, finalLines);
                 } else {
                     success = hologramProvider.createHologram(id, hologramLoc, finalLines);
                 }
                 
                 if (success) {
-                    debug("已为岛屿 " + islandUUID + " 创建全息图");
+                    debugLog.debug("已为岛屿 {} 创建全息图", islandUUID);
                 } else {
-                    debug("创建全息图失败: " + islandUUID);
+                    debugLog.debug("创建全息图失败: {}", islandUUID);
                 }
             }
         }
@@ -91,16 +93,19 @@ public abstract class AbstractNpcProvider implements NpcProvider {
         // 删除全息图
         if (hologramProvider != null) {
             hologramProvider.deleteIslandHologram(islandUUID);
-            debug("已删除岛屿 " + islandUUID + " 的全息图");
+            debugLog.debug("已删除岛屿 {} 的全息图", islandUUID);
         }
     }
     
     /**
-     * 输出debug日志（仅在debug模式启用时）
+     * 释放NPC前的钩子 - 用于释放全息图等（不影响持久化记录）
+     * 隐藏状态只保留在记录中，isNpcHidden 会回退读取记录
      */
-    protected void debug(String message) {
-        if (plugin.getConfigManager().isDebugEnabled()) {
-            plugin.getLogger().info("[DEBUG] [" + getProviderName() + "] " + message);
+    protected void beforeNpcUnloaded(UUID islandUUID) {
+        clearHiddenState(islandUUID);
+        plugin.getReleaseStats().recordNpcReleased();
+        if (hologramProvider != null && hologramProvider.deleteIslandHologram(islandUUID)) {
+            plugin.getReleaseStats().recordHologramReleased();
         }
     }
     
@@ -112,24 +117,197 @@ public abstract class AbstractNpcProvider implements NpcProvider {
     protected Location calculateSpawnLocation(Location islandCenter) {
         if (islandCenter == null) return null;
 
-        double offsetX = plugin.getConfigManager().getSpawnOffsetX();
-        double offsetY = plugin.getConfigManager().getSpawnOffsetY();
-        double offsetZ = plugin.getConfigManager().getSpawnOffsetZ();
-        float yaw = plugin.getConfigManager().getNpcYaw();
-        float pitch = plugin.getConfigManager().getNpcPitch();
+        com.magicbili.islandnpc.config.ConfigSnapshot snapshot = plugin.getConfigManager().getSnapshot();
+        float yaw = snapshot.getNpcYaw();
+        float pitch = snapshot.getNpcPitch();
 
-        Location spawnLoc = islandCenter.clone().add(offsetX, offsetY, offsetZ);
+        Location spawnLoc = islandCenter.clone().add(snapshot.getSpawnOffsetX(), snapshot.getSpawnOffsetY(), snapshot.getSpawnOffsetZ());
         spawnLoc.setYaw(yaw);
         spawnLoc.setPitch(pitch);
         
-        debug(String.format("计算生成位置: Yaw=%.1f, Pitch=%.1f", yaw, pitch));
+        if (debugLog.isEnabled()) {
+            debugLog.debug("计算生成位置: Yaw={}, Pitch={}", yaw, pitch);
+        }
         
         return spawnLoc;
     }
     
+    /**
+     * 岛屿的NPC是否已生成运行时对象（NPC插件中存在）
+     */
+    protected abstract boolean isNpcMaterialized(UUID islandUUID);
+    
+    /**
+     * 在NPC插件中创建并生成NPC，建立映射关系，不保存记录
+     * @param islandUUID 岛屿UUID
+     * @param location 生成位置
+     * @param record 恢复时的记录，新建NPC时为 null
+     * @return 是否生成成功
+     */
+    protected abstract boolean spawnNpc(UUID islandUUID, Location location, IslandNpcRecord record);
+    
+    @Override
+    public boolean recreateNpc(UUID islandUUID) {
+        IslandNpcRecord record = plugin.getConfigManager().getNpcRecord(islandUUID);
+        if (record == null || !record.hasLocation()) {
+            debugLog.debug("未找到岛屿的NPC配置数据: {}", islandUUID);
+            return false;
+        }
+        return restoreNpc(record);
+    }
+    
+    @Override
+    public boolean restoreNpc(IslandNpcRecord record) {
+        UUID islandUUID = record.getIslandUUID();
+        if (isNpcMaterialized(islandUUID)) {
+            debugLog.debug("NPC已存在，跳过恢复: {}", islandUUID);
+            return true;
+        }
+        if (!record.hasLocation()) {
+            return false;
+        }
+        
+        // 隐藏的NPC不生成实体，显示时再从记录生成
+        if (record.isHidden()) {
+            setHiddenState(islandUUID, true);
+            debugLog.debug("NPC已隐藏，不生成实体: {}", islandUUID);
+            return true;
+        }
+        
+        org.bukkit.World world = org.bukkit.Bukkit.getWorld(record.getWorldName());
+        if (world == null) {
+            debugLog.debug("世界不存在: {}", record.getWorldName());
+            return false;
+        }
+        
+        com.magicbili.islandnpc.config.ConfigSnapshot snapshot = plugin.getConfigManager().getSnapshot();
+        Location location = record.toLocation(world, snapshot.getNpcYaw(), snapshot.getNpcPitch());
+        if (!spawnNpc(islandUUID, location, record)) {
+            return false;
+        }
+        setHiddenState(islandUUID, false);
+        afterNpcCreated(islandUUID, location);
+        
+        debugLog.debug("从记录恢复NPC: {}", islandUUID);
+        return true;
+    }
+    
+    @Override
+    public boolean hasNpc(UUID islandUUID) {
+        if (isNpcMaterialized(islandUUID)) {
+            return true;
+        }
+        // 隐藏时恢复的NPC没有运行时对象，只有记录
+        IslandNpcRecord record = plugin.getConfigManager().getNpcRecord(islandUUID);
+        return record != null && record.hasLocation() && record.isHidden();
+    }
+    
+    /**
+     * 显示没有运行时对象的隐藏NPC：更新记录后从记录生成
+     * @return 是否显示成功
+     */
+    protected boolean showFromRecord(UUID islandUUID) {
+        IslandNpcRecord record = plugin.getConfigManager().getNpcRecord(islandUUID);
+        if (record == null || !record.hasLocation() || !record.isHidden()) {
+            debugLog.debug("显示NPC失败: NPC不存在 - {}", islandUUID);
+            return false;
+        }
+        record = record.withHidden(false);
+        setHiddenState(islandUUID, false);
+        plugin.getConfigManager().putNpcRecord(record);
+        // 世界未加载时只更新记录，世界加载后生成
+        restoreNpc(record);
+        debugLog.debug("已显示 NPC: {}", islandUUID);
+        return true;
+    }
+    
+    /**
+     * 隐藏没有运行时对象的NPC（例如已释放的NPC）：只更新记录
+     * @return 是否隐藏成功
+     */
+    protected boolean hideRecord(UUID islandUUID) {
+        IslandNpcRecord record = plugin.getConfigManager().getNpcRecord(islandUUID);
+        if (record == null) {
+            debugLog.debug("隐藏NPC失败: NPC不存在 - {}", islandUUID);
+            return false;
+        }
+        setHiddenState(islandUUID, true);
+        plugin.getConfigManager().putNpcRecord(record.withHidden(true));
+        debugLog.debug("已隐藏 NPC: {}", islandUUID);
+        return true;
+    }
+    
+    /**
+     * 移动没有运行时对象的隐藏NPC：只更新记录中的位置
+     * @return 是否移动成功
+     */
+    protected boolean moveRecord(UUID islandUUID, Location newLocation) {
+        if (!hasNpc(islandUUID)) {
+            debugLog.debug("移动NPC失败: NPC不存在 - {}", islandUUID);
+            return false;
+        }
+        plugin.getConfigManager().putNpcRecord(buildRecord(islandUUID, newLocation, null, null));
+        debugLog.debug("已移动 NPC: {}", islandUUID);
+        return true;
+    }
+    
+    /**
+     * 删除没有运行时对象的NPC（隐藏或已释放）：只删除记录
+     * @return 是否删除成功
+     */
+    protected boolean deleteRecord(UUID islandUUID) {
+        if (plugin.getConfigManager().getNpcRecord(islandUUID) == null) {
+            // 数据加载完成前记录可能只在磁盘上（没有索引时读不到），仍然记录删除，避免加载完成后恢复
+            if (!plugin.getConfigManager().isNpcDataLoaded()) {
+                plugin.getConfigManager().removeNpcRecord(islandUUID);
+            }
+            debugLog.debug("删除NPC失败: 岛屿没有NPC - {}", islandUUID);
+            return false;
+        }
+        beforeNpcDeleted(islandUUID);
+        releaseIsland(islandUUID);
+        plugin.getConfigManager().removeNpcRecord(islandUUID);
+        plugin.getEventLog().record("删除岛屿NPC", islandUUID);
+        return true;
+    }
+    
+    /**
+     * 记录岛屿NPC的隐藏状态
+     */
+    protected void setHiddenState(UUID islandUUID, boolean isHidden) {
+        int handle = islandHandles.intern(islandUUID);
+        hiddenKnown.set(handle);
+        hidden.set(handle, isHidden);
+    }
+    
+    /**
+     * 清除岛屿NPC的隐藏状态，之后 isNpcHidden 回退读取记录
+     */
+    protected void clearHiddenState(UUID islandUUID) {
+        int handle = islandHandles.find(islandUUID);
+        if (handle >= 0) {
+            hiddenKnown.clear(handle);
+            hidden.clear(handle);
+        }
+    }
+    
+    /**
+     * 岛屿的NPC被删除后释放句柄，子类需要先清除按句柄保存的状态
+     */
+    protected void releaseIsland(UUID islandUUID) {
+        clearHiddenState(islandUUID);
+        islandHandles.release(islandUUID);
+    }
+    
     @Override
     public boolean isNpcHidden(UUID islandUUID) {
-        return hiddenNpcs.getOrDefault(islandUUID, false);
+        int handle = islandHandles.find(islandUUID);
+        if (handle >= 0 && hiddenKnown.get(handle)) {
+            return hidden.get(handle);
+        }
+        // 已释放的NPC只保留持久化记录
+        IslandNpcRecord record = plugin.getConfigManager().getNpcRecord(islandUUID);
+        return record != null && record.isHidden();
     }
     
     @Override
@@ -144,24 +322,142 @@ public abstract class AbstractNpcProvider implements NpcProvider {
         saveAllNpcData();
     }
     
+    @Override
+    public void applyConfigChanges(com.magicbili.islandnpc.config.ConfigDiff diff) {
+        if (diff.isNpcAppearanceChanged()) {
+            reloadAllNpcs();
+        }
+        if (diff.isNpcPlacementChanged()) {
+            moveAllNpcs(diff.getPrevious(), diff.getCurrent(), !diff.isHologramLayoutChanged());
+        }
+        if (hologramProvider != null && (diff.isHologramTextChanged() || diff.isHologramLayoutChanged())) {
+            refreshAllHolograms(diff.isHologramLayoutChanged());
+        }
+    }
+    
+    /**
+     * 生成偏移或朝向变化后移动所有NPC
+     * 按新旧偏移的差值移动（保留玩家用 move 调整过的相对位置），朝向直接使用新配置；
+     * 没有运行时对象的NPC（世界未加载或懒加载模式下尚未生成）只平移记录中的位置，下次生成时使用新朝向
+     * @param moveHolograms 是否同时移动全息图（全息图需要重建时由重建处理）
+     */
+    private void moveAllNpcs(com.magicbili.islandnpc.config.ConfigSnapshot previous,
+                             com.magicbili.islandnpc.config.ConfigSnapshot current, boolean moveHolograms) {
+        double dx = current.getSpawnOffsetX() - previous.getSpawnOffsetX();
+        double dy = current.getSpawnOffsetY() - previous.getSpawnOffsetY();
+        double dz = current.getSpawnOffsetZ() - previous.getSpawnOffsetZ();
+        int moved = 0;
+        int shifted = 0;
+        Set<UUID> materialized = getAllIslandUUIDs();
+        // 移动时会写回记录，先复制一份
+        List<IslandNpcRecord> records = new ArrayList<>(plugin.getConfigManager().getNpcRecords().getAll());
+        for (IslandNpcRecord record : records) {
+            if (!record.hasLocation()) {
+                continue;
+            }
+            UUID islandUUID = record.getIslandUUID();
+            Location location = materialized.contains(islandUUID) ? recordLocation(islandUUID) : null;
+            if (location != null) {
+                location.add(dx, dy, dz);
+                if (moveNpc(islandUUID, location)) {
+                    moved++;
+                    String id = "island_" + islandUUID;
+                    if (moveHolograms && hologramProvider != null && hologramProvider.hologramExists(id)) {
+                        hologramProvider.moveHologram(id, location.clone().add(0, current.getHologramYOffset(), 0));
+                    }
+                    continue;
+                }
+            }
+            // 只有朝向变化时记录不需要改动
+            if (dx != 0 || dy != 0 || dz != 0) {
+                plugin.getConfigManager().putNpcRecord(record.withOffset(dx, dy, dz));
+                shifted++;
+            }
+        }
+        debugLog.debug("配置重载: 已移动 {} 个NPC，平移了 {} 条未生成NPC的记录", moved, shifted);
+    }
+    
+    /**
+     * 全息图配置变化后只更新全息图，不重新生成NPC
+     * @param rebuild 是否需要重建（位置或样式变化），否则只更新文本
+     */
+    private void refreshAllHolograms(boolean rebuild) {
+        com.magicbili.islandnpc.config.ConfigSnapshot snapshot = plugin.getConfigManager().getSnapshot();
+        int refreshed = 0;
+        for (UUID islandUUID : getAllIslandUUIDs()) {
+            String id = "island_" + islandUUID;
+            if (!hologramProvider.hologramExists(id)) {
+                continue;
+            }
+            if (rebuild) {
+                Location location = recordLocation(islandUUID);
+                if (location == null) {
+                    continue;
+                }
+                hologramProvider.deleteHologram(id);
+                afterNpcCreated(islandUUID, location);
+            } else {
+                String ownerName = plugin.getIslandProvider() != null
+                    ? plugin.getIslandProvider().getIslandOwnerName(islandUUID) : null;
+                if (ownerName == null) {
+                    continue;
+                }
+                hologramProvider.updateHologram(id, snapshot.renderHologramLines(ownerName));
+            }
+            refreshed++;
+        }
+        debugLog.debug("配置重载: 已{} {} 个全息图", rebuild ? "重建" : "更新", refreshed);
+    }
+    
+    /**
+     * 从记录获取NPC当前位置（朝向使用当前配置），世界未加载时返回 null
+     */
+    private Location recordLocation(UUID islandUUID) {
+        IslandNpcRecord record = plugin.getConfigManager().getNpcRecord(islandUUID);
+        if (record == null || !record.hasLocation()) {
+            return null;
+        }
+        org.bukkit.World world = org.bukkit.Bukkit.getWorld(record.getWorldName());
+        if (world == null) {
+            return null;
+        }
+        com.magicbili.islandnpc.config.ConfigSnapshot snapshot = plugin.getConfigManager().getSnapshot();
+        return record.toLocation(world, snapshot.getNpcYaw(), snapshot.getNpcPitch());
+    }
+    
     /**
      * 从配置加载NPC隐藏状态
      */
     protected void loadHiddenStates() {
-        org.bukkit.configuration.ConfigurationSection section = 
-            plugin.getConfigManager().getNpcDataConfig().getConfigurationSection("npcs");
-        if (section == null) {
-            return;
+        for (IslandNpcRecord record : plugin.getConfigManager().getNpcRecords().getAll()) {
+            setHiddenState(record.getIslandUUID(), record.isHidden());
         }
-        
-        for (String key : section.getKeys(false)) {
-            try {
-                UUID islandUUID = UUID.fromString(key);
-                boolean hidden = section.getBoolean(key + ".hidden", false);
-                hiddenNpcs.put(islandUUID, hidden);
-            } catch (IllegalArgumentException e) {
-                plugin.getLogger().warning("无效的岛屿UUID: " + key);
-            }
+    }
+    
+    /**
+     * 根据NPC当前状态生成岛屿记录
+     * 保留旧记录中当前提供者不维护的字段
+     * @param islandUUID 岛屿UUID
+     * @param location NPC位置，为 null 时保留旧位置
+     * @param npcId NPC ID，为 null 时保留旧值
+     * @param dialogId 对话框ID，为 null 时保留旧值
+     */
+    protected IslandNpcRecord buildRecord(UUID islandUUID, Location location, String npcId, String dialogId) {
+        IslandNpcRecord record = plugin.getConfigManager().getNpcRecord(islandUUID);
+        if (record == null) {
+            record = new IslandNpcRecord(islandUUID, null, 0, 0, 0, 0, 0, false, null, null, null);
+        }
+        if (location != null) {
+            // 保存是否为 SlimeWorld
+            boolean isSlimeWorld = location.getWorld() != null && WorldUtils.isSlimeWorld(location.getWorld());
+            record = record.withLocation(location, isSlimeWorld);
+        }
+        if (npcId != null) {
+            record = record.withNpcId(npcId);
+        }
+        if (dialogId != null) {
+            record = record.withDialogId(dialogId);
         }
+        return record.withHidden(isNpcHidden(islandUUID));
     }
 }
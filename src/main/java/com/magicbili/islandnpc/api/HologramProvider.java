@@ -77,6 +77,12 @@ public interface HologramProvider {
      */
     void cleanup();
     
+    /**
+     * 检查全息图插件是否已启用
+     * @return 是否就绪
+     */
+    boolean isReady();
+    
     /**
      * 为岛屿NPC创建全息图
      * @param islandUUID 岛屿UUID
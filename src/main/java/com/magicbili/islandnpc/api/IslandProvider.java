@@ -4,6 +4,7 @@ import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Listener;
 
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -55,6 +56,13 @@ public interface IslandProvider {
      */
     String getIslandOwnerName(UUID islandUUID);
     
+    /**
+     * 获取位置所在的岛屿
+     * @param location 位置
+     * @return 岛屿UUID，位置不在任何岛屿中时返回null
+     */
+    UUID getIslandAt(Location location);
+
     /**
      * 检查岛屿是否存在
      * @param islandUUID 岛屿UUID
@@ -68,4 +76,33 @@ public interface IslandProvider {
      * @return 事件监听器
      */
     Listener getEventListener();
+
+    /**
+     * 检查岛屿插件的数据是否已加载完成
+     * 启动协调器会等待此方法返回 true 再恢复NPC
+     * @return 是否就绪
+     */
+    boolean isReady();
+
+    /**
+     * 把NPC记录保存到岛屿插件的岛屿数据中
+     * 记录随岛屿插件自己的数据一起持久化，岛屿解散时一起删除
+     * @param islandUUID 岛屿UUID
+     * @param data 编码后的NPC记录
+     * @return 是否保存成功，岛屿不存在时返回 false
+     */
+    boolean saveNpcData(UUID islandUUID, byte[] data);
+
+    /**
+     * 删除岛屿数据中保存的NPC记录
+     * @param islandUUID 岛屿UUID
+     */
+    void removeNpcData(UUID islandUUID);
+
+    /**
+     * 读取所有岛屿数据中保存的NPC记录
+     * 只在 isReady() 返回 true 后调用
+     * @return 岛屿UUID -> 编码后的NPC记录
+     */
+    Map<UUID, byte[]> loadAllNpcData();
 }
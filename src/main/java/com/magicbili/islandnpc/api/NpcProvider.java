@@ -1,5 +1,6 @@
 package com.magicbili.islandnpc.api;
 
+import com.magicbili.islandnpc.storage.IslandNpcRecord;
 import org.bukkit.Location;
 import org.bukkit.event.Listener;
 
@@ -85,12 +86,34 @@ public interface NpcProvider {
      */
     boolean recreateNpc(UUID islandUUID);
     
+    /**
+     * 从记录恢复岛屿的NPC（只读，不写回记录）
+     * 隐藏的NPC只恢复隐藏状态，不生成实体，显示时才生成
+     * @param record 岛屿记录
+     * @return 是否恢复成功
+     */
+    boolean restoreNpc(IslandNpcRecord record);
+    
+    /**
+     * 释放岛屿NPC的运行时对象（NPC和全息图），保留持久化记录
+     * 之后可以通过 recreateNpc 重新生成
+     * @param islandUUID 岛屿UUID
+     * @return 是否释放了NPC
+     */
+    boolean unloadNpc(UUID islandUUID);
+    
     /**
      * 重新加载所有NPC
-     * 用于配置重载后更新NPC
+     * 按当前配置的实体类型和皮肤重新生成已生成的NPC
      */
     void reloadAllNpcs();
     
+    /**
+     * 按配置差异只更新受影响的部分（重新生成、移动或只更新全息图）
+     * @param diff 重载前后的配置差异
+     */
+    void applyConfigChanges(com.magicbili.islandnpc.config.ConfigDiff diff);
+    
     /**
      * 保存所有NPC数据
      */
@@ -103,6 +126,13 @@ public interface NpcProvider {
      */
     Listener getEventListener();
     
+    /**
+     * 检查NPC插件是否已加载完成（注册表可用）
+     * 启动协调器会等待此方法返回 true 再恢复NPC
+     * @return 是否就绪
+     */
+    boolean isReady();
+    
     /**
      * 清理资源
      * 在插件禁用时调用
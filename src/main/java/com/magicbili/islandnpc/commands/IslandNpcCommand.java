@@ -47,6 +47,8 @@ public class IslandNpcCommand implements CommandExecutor, TabCompleter {
                 return handleFixAll(sender);
             case "reload":
                 return handleReload(sender);
+            case "stats":
+                return handleStats(sender);
             case "create":
                 return handleCreate(sender);
             case "delete":
@@ -306,7 +308,7 @@ public class IslandNpcCommand implements CommandExecutor, TabCompleter {
                 Location center = plugin.getIslandProvider().getIslandCenter(islandUUID);
                 if (center != null && plugin.getNpcProvider().createNpc(islandUUID, center)) {
                     fixed++;
-                    plugin.getLogger().info("Fixed NPC for island: " + islandUUID + " (Owner: " + onlinePlayer.getName() + ")");
+                    plugin.getEventLog().record("修复岛屿NPC", islandUUID + " (拥有者: " + onlinePlayer.getName() + ")");
                 }
             }
         }
@@ -326,6 +328,36 @@ public class IslandNpcCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
+    private boolean handleStats(CommandSender sender) {
+        if (!sender.hasPermission("islandnpc.admin")) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+
+        int live = plugin.getNpcProvider() != null ? plugin.getNpcProvider().getAllIslandUUIDs().size() : 0;
+        com.magicbili.islandnpc.npc.NpcReleaseStats stats = plugin.getReleaseStats();
+        sender.sendMessage(plugin.getConfigManager().getMessage("stats",
+            "records", String.valueOf(plugin.getConfigManager().getNpcRecords().size()),
+            "live", String.valueOf(live),
+            "worlds", String.valueOf(stats.getWorldUnloads()),
+            "npcs", String.valueOf(stats.getNpcsReleased()),
+            "holograms", String.valueOf(stats.getHologramsReleased())));
+
+        com.magicbili.islandnpc.storage.NpcDataFlusher flusher = plugin.getConfigManager().getNpcDataFlusher();
+        if (flusher != null) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("stats-save",
+                "depth", String.valueOf(flusher.getQueueDepth()),
+                "peak", String.valueOf(flusher.getPeakQueueDepth()),
+                "flushes", String.valueOf(flusher.getFlushCount()),
+                "written", String.valueOf(flusher.getRecordsWritten()),
+                "last", String.valueOf(flusher.getLastFlushMillis()),
+                "max", String.valueOf(flusher.getMaxFlushMillis()),
+                "backpressure", String.valueOf(flusher.getBackpressureCount()),
+                "backpressure_ms", String.valueOf(flusher.getBackpressureMillis())));
+        }
+        return true;
+    }
+
     private void sendHelp(CommandSender sender) {
         sender.sendMessage(plugin.getConfigManager().getMessage("help-header"));
         sender.sendMessage(plugin.getConfigManager().getMessage("help-hide"));
@@ -336,6 +368,7 @@ public class IslandNpcCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(plugin.getConfigManager().getMessage("help-create"));
         sender.sendMessage(plugin.getConfigManager().getMessage("help-delete"));
         sender.sendMessage(plugin.getConfigManager().getMessage("help-reload"));
+        sender.sendMessage(plugin.getConfigManager().getMessage("help-stats"));
         sender.sendMessage(plugin.getConfigManager().getMessage("help-footer"));
     }
 
@@ -356,7 +389,7 @@ public class IslandNpcCommand implements CommandExecutor, TabCompleter {
         List<String> completions = new ArrayList<>();
 
         if (args.length == 1) {
-            List<String> subCommands = Arrays.asList("hide", "show", "toggle", "move", "fixall", "create", "delete", "reload", "help");
+            List<String> subCommands = Arrays.asList("hide", "show", "toggle", "move", "fixall", "create", "delete", "reload", "stats", "help");
             String input = args[0].toLowerCase();
             
             for (String subCmd : subCommands) {
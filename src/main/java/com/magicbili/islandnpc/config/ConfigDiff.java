@@ -0,0 +1,166 @@
+package com.magicbili.islandnpc.config;
+
+import com.magicbili.islandnpc.utils.DebugLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 两个配置快照之间的结构化差异
+ * 重载时按差异只应用受影响的部分：
+ * 1. 实体类型/皮肤变化：重新生成NPC
+ * 2. 生成偏移/朝向变化：只移动NPC
+ * 3. 全息图文本变化：只更新全息图文本
+ * 4. 全息图位置/样式变化：只重建全息图
+ * 其他配置（消息、Debug、对话框等）随快照替换直接生效，提供者和存储等启动时确定的配置需要重启
+ *
+ * @author magicbili
+ */
+public final class ConfigDiff {
+
+    private final ConfigSnapshot previous;
+    private final ConfigSnapshot current;
+    private final List<String> changedKeys = new ArrayList<>();
+    private final List<String> restartRequiredKeys = new ArrayList<>();
+
+    private boolean npcAppearanceChanged;
+    private boolean npcPlacementChanged;
+    private boolean hologramTextChanged;
+    private boolean hologramLayoutChanged;
+
+    private ConfigDiff(ConfigSnapshot previous, ConfigSnapshot current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    /**
+     * 比较两个配置快照
+     * @param previous 重载前的快照
+     * @param current 重载后的快照
+     * @return 差异
+     */
+    public static ConfigDiff between(ConfigSnapshot previous, ConfigSnapshot current) {
+        ConfigDiff diff = new ConfigDiff(previous, current);
+
+        // 重新生成NPC
+        diff.npcAppearanceChanged |= diff.check("npc.entity-type", previous.getNpcEntityTypeName(), current.getNpcEntityTypeName());
+        diff.npcAppearanceChanged |= diff.check("npc.skin", previous.getNpcSkin(), current.getNpcSkin());
+
+        // 只移动NPC
+        diff.npcPlacementChanged |= diff.check("npc.spawn-offset.x", previous.getSpawnOffsetX(), current.getSpawnOffsetX());
+        diff.npcPlacementChanged |= diff.check("npc.spawn-offset.y", previous.getSpawnOffsetY(), current.getSpawnOffsetY());
+        diff.npcPlacementChanged |= diff.check("npc.spawn-offset.z", previous.getSpawnOffsetZ(), current.getSpawnOffsetZ());
+        diff.npcPlacementChanged |= diff.check("npc.rotation.yaw", previous.getNpcYaw(), current.getNpcYaw());
+        diff.npcPlacementChanged |= diff.check("npc.rotation.pitch", previous.getNpcPitch(), current.getNpcPitch());
+
+        // 只更新全息图
+        diff.hologramTextChanged |= diff.check("npc.hologram.lines", previous.getHologramLines(), current.getHologramLines());
+        diff.hologramLayoutChanged |= diff.check("npc.hologram.line-height", previous.getHologramLineHeight(), current.getHologramLineHeight());
+        diff.hologramLayoutChanged |= diff.check("npc.hologram.view-range", previous.getHologramViewRange(), current.getHologramViewRange());
+        diff.hologramLayoutChanged |= diff.check("npc.hologram.position.y-offset", previous.getHologramYOffset(), current.getHologramYOffset());
+        diff.hologramLayoutChanged |= diff.check("npc.hologram.position.line-spacing", previous.getHologramLineSpacing(), current.getHologramLineSpacing());
+        diff.hologramLayoutChanged |= diff.check("npc.hologram.background.enabled", previous.isHologramBackgroundEnabled(), current.isHologramBackgroundEnabled());
+        diff.hologramLayoutChanged |= diff.check("npc.hologram.background.color", previous.getHologramBackgroundColor(), current.getHologramBackgroundColor());
+
+        // 随快照替换直接生效
+        diff.check("debug", previous.isDebugEnabled(), current.isDebugEnabled());
+        for (DebugLogger.Category category : DebugLogger.Category.values()) {
+            diff.check("log-levels." + category.getKey(), previous.isDebugEnabled(category), current.isDebugEnabled(category));
+        }
+        diff.check("npc.dialog-id", previous.getDialogId(), current.getDialogId());
+        diff.check("permissions.default", previous.isDefaultPermissions(), current.isDefaultPermissions());
+        diff.check("performance.spawn-tick-budget-ms", previous.getSpawnTickBudgetMs(), current.getSpawnTickBudgetMs());
+        diff.check("performance.spawn-progress-interval", previous.getSpawnProgressInterval(), current.getSpawnProgressInterval());
+        if (!previous.getMessages().contentEquals(current.getMessages())) {
+            diff.changedKeys.add("messages");
+        }
+
+        // 启动时确定，需要重启
+        diff.checkRestart("npc.provider", previous.getNpcProvider(), current.getNpcProvider());
+        diff.checkRestart("npc.hologram.enabled", previous.isHologramEnabled(), current.isHologramEnabled());
+        diff.checkRestart("npc.hologram.provider", previous.getHologramProvider(), current.getHologramProvider());
+        diff.checkRestart("performance.startup-timeout", previous.getStartupTimeout(), current.getStartupTimeout());
+        diff.checkRestart("performance.save-max-latency-ms", previous.getSaveMaxLatencyMs(), current.getSaveMaxLatencyMs());
+        diff.checkRestart("performance.save-max-batch", previous.getSaveMaxBatch(), current.getSaveMaxBatch());
+        diff.checkRestart("performance.lazy-chunk-loading", previous.isLazyChunkLoading(), current.isLazyChunkLoading());
+        diff.checkRestart("performance.watch-config", previous.isWatchConfig(), current.isWatchConfig());
+        diff.checkRestart("storage.type", previous.getStorageType(), current.getStorageType());
+        diff.checkRestart("storage.shards", previous.getStorageShards(), current.getStorageShards());
+        diff.checkRestart("storage.world-pdc", previous.isWorldPdcStorage(), current.isWorldPdcStorage());
+        diff.checkRestart("storage.island-data", previous.isIslandDataStorage(), current.isIslandDataStorage());
+        return diff;
+    }
+
+    private boolean check(String key, Object before, Object after) {
+        if (Objects.equals(before, after)) {
+            return false;
+        }
+        changedKeys.add(key);
+        return true;
+    }
+
+    private void checkRestart(String key, Object before, Object after) {
+        if (check(key, before, after)) {
+            restartRequiredKeys.add(key);
+        }
+    }
+
+    /**
+     * @return 没有检测到任何变化
+     */
+    public boolean isEmpty() {
+        return changedKeys.isEmpty();
+    }
+
+    /**
+     * 实体类型或皮肤变化，需要重新生成NPC
+     */
+    public boolean isNpcAppearanceChanged() {
+        return npcAppearanceChanged;
+    }
+
+    /**
+     * 生成偏移或朝向变化，只需要移动NPC
+     */
+    public boolean isNpcPlacementChanged() {
+        return npcPlacementChanged;
+    }
+
+    /**
+     * 全息图文本变化，只需要更新文本
+     */
+    public boolean isHologramTextChanged() {
+        return hologramTextChanged;
+    }
+
+    /**
+     * 全息图位置或样式变化，需要重建全息图
+     */
+    public boolean isHologramLayoutChanged() {
+        return hologramLayoutChanged;
+    }
+
+    /**
+     * @return 变化的配置键（不可修改）
+     */
+    public List<String> getChangedKeys() {
+        return Collections.unmodifiableList(changedKeys);
+    }
+
+    /**
+     * @return 变化后需要重启才能生效的配置键（不可修改）
+     */
+    public List<String> getRestartRequiredKeys() {
+        return Collections.unmodifiableList(restartRequiredKeys);
+    }
+
+    public ConfigSnapshot getPrevious() {
+        return previous;
+    }
+
+    public ConfigSnapshot getCurrent() {
+        return current;
+    }
+}
@@ -1,25 +1,64 @@
 package com.magicbili.islandnpc.config;
 
 import com.magicbili.islandnpc.IslandNpcPlugin;
-import org.bukkit.ChatColor;
+import com.magicbili.islandnpc.storage.IslandNpcRecord;
+import com.magicbili.islandnpc.storage.IslandNpcStorage;
+import com.magicbili.islandnpc.storage.NpcDataFlusher;
+import com.magicbili.islandnpc.storage.NpcRecordLog;
+import com.magicbili.islandnpc.storage.NpcRecordLookup;
+import com.magicbili.islandnpc.storage.NpcRecordStore;
+import com.magicbili.islandnpc.storage.NpcStorage;
+import com.magicbili.islandnpc.storage.NpcStorageFactory;
+import com.magicbili.islandnpc.storage.WorldNpcStorage;
+import com.magicbili.islandnpc.utils.DebugLogger;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ConfigManager {
 
     // 当前配置文件版本号 - 更新配置时需要增加此版本号
-    private static final int CURRENT_CONFIG_VERSION = 2;
+    private static final int CURRENT_CONFIG_VERSION = 3;
     
     private final IslandNpcPlugin plugin;
+    private final DebugLogger debugLog;
     private FileConfiguration config;
-    private FileConfiguration npcDataConfig;
-    private File npcDataFile;
+    // 预解析的配置快照，重载时整体替换
+    private volatile ConfigSnapshot snapshot;
+    private final NpcRecordStore npcRecords = new NpcRecordStore();
+    private NpcStorage npcStorage;
+    private NpcDataFlusher npcDataFlusher;
+    private boolean npcDataLoaded = false;
+    private final List<Runnable> npcDataCallbacks = new ArrayList<>();
+    // 异步读取任务：开始时置位，存储打开并读取完成后计数归零；关闭时据此等待读取完成
+    private AtomicBoolean npcDataReadStarted = new AtomicBoolean(true);
+    private CountDownLatch npcDataRead = new CountDownLatch(0);
+    // 完整加载完成之前按岛屿读取单条记录（内存映射索引），加载完成后丢弃
+    private NpcRecordLookup pendingLookup;
+    private final Set<UUID> removedBeforeLoad = new HashSet<>();
+    // SlimeWorld 岛屿的记录保存在世界中（storage.world-pdc），未启用时为 null
+    private WorldNpcStorage worldNpcStorage;
+    // 记录保存在岛屿插件的岛屿数据中（storage.island-data），未启用时为 null
+    private IslandNpcStorage islandNpcStorage;
 
     public ConfigManager(IslandNpcPlugin plugin) {
         this.plugin = plugin;
+        this.debugLog = new DebugLogger(plugin, DebugLogger.Category.STORAGE, "");
     }
 
     public void loadConfig() {
@@ -29,16 +68,207 @@ public class ConfigManager {
         
         // 检查并更新配置文件版本
         checkAndUpdateConfig();
+        
+        snapshot = new ConfigSnapshot(config, plugin.getLogger());
+    }
+
+    /**
+     * 加载NPC数据
+     * 数据默认保存在追加写入的二进制日志 npcdata.log 中，
+     * storage.type 为 SHARDED 时分片保存在 npcdata/ 目录，为 SQLITE 时保存在 npcdata.db
+     * 如果存在旧版 npcdata.yml，会导入到存储并重命名为 npcdata.yml.bak
+     * 切换到 SHARDED 或 SQLITE 时，如果新存储为空，会导入已有的 npcdata.log 并重命名为 npcdata.log.bak
+     *
+     * 文件读取和解码在异步线程中完成，构建好的索引交给主线程一次性替换，
+     * 启用耗时不再随数据文件大小增长。需要数据的逻辑通过 whenNpcDataLoaded() 等待
+     */
+    public void loadNpcData() {
+        npcDataLoaded = false;
+        NpcStorage storage = NpcStorageFactory.createStorage(plugin);
+        npcStorage = storage;
+        // 刷盘线程在数据加载完成后启动
+        npcDataFlusher = new NpcDataFlusher(plugin, storage, getSaveMaxLatencyMs(), getSaveMaxBatch());
+        worldNpcStorage = isWorldPdcStorage() ? new WorldNpcStorage(plugin) : null;
+        islandNpcStorage = isIslandDataStorage() ? new IslandNpcStorage(plugin) : null;
+
+        // 映射索引是 O(1) 的，加载期间需要的岛屿可以直接从磁盘读取
+        removedBeforeLoad.clear();
+        try {
+            pendingLookup = storage.openLookup();
+        } catch (IOException e) {
+            pendingLookup = null;
+            plugin.getLogger().warning("无法打开 " + storage.getName() + " 的索引: " + e.getMessage());
+        }
 
-        npcDataFile = new File(plugin.getDataFolder(), "npcdata.yml");
-        if (!npcDataFile.exists()) {
+        AtomicBoolean readStarted = new AtomicBoolean();
+        CountDownLatch read = new CountDownLatch(1);
+        npcDataReadStarted = readStarted;
+        npcDataRead = read;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            // 关闭时已在主线程读取
+            if (!readStarted.compareAndSet(false, true)) {
+                return;
+            }
+            long start = System.nanoTime();
+            NpcRecordStore loaded;
             try {
-                npcDataFile.createNewFile();
-            } catch (IOException e) {
-                plugin.getLogger().severe("Cannot create npcdata.yml: " + e.getMessage());
+                loaded = readNpcData(storage);
+            } finally {
+                read.countDown();
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            if (!plugin.isEnabled()) {
+                return;
             }
+            Bukkit.getScheduler().runTask(plugin, () -> installNpcData(loaded, elapsedMs));
+        });
+    }
+
+    /**
+     * NPC数据是否已加载完成
+     */
+    public boolean isNpcDataLoaded() {
+        return npcDataLoaded;
+    }
+
+    /**
+     * 在NPC数据加载完成后于主线程执行任务，如果已加载则立即执行
+     * @param callback 任务
+     */
+    public void whenNpcDataLoaded(Runnable callback) {
+        if (npcDataLoaded) {
+            callback.run();
+        } else {
+            npcDataCallbacks.add(callback);
         }
-        npcDataConfig = YamlConfiguration.loadConfiguration(npcDataFile);
+    }
+
+    /**
+     * 主线程：替换为加载好的索引并执行等待中的任务
+     */
+    private void installNpcData(NpcRecordStore loaded, long elapsedMs) {
+        int count = loaded.size();
+        // 加载期间删除的岛屿（可能只存在于磁盘上）不能随加载结果恢复
+        npcRecords.replaceWith(loaded, removedBeforeLoad);
+        npcDataLoaded = true;
+        npcDataFlusher.start();
+        closePendingLookup();
+        removedBeforeLoad.clear();
+        // 已加载的世界中保存的记录
+        if (worldNpcStorage != null) {
+            for (World world : Bukkit.getWorlds()) {
+                loadWorldNpcData(world);
+            }
+        }
+        if (debugLog.isEnabled()) {
+            debugLog.debug("异步加载了 {} 个岛屿的NPC数据，耗时 {} ms", count, elapsedMs);
+        }
+
+        List<Runnable> callbacks = new ArrayList<>(npcDataCallbacks);
+        npcDataCallbacks.clear();
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                plugin.getLogger().severe("NPC数据加载后的任务执行失败: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 异步线程：读取并解码NPC数据
+     * 返回的存储只在本线程构建，交给主线程后不再修改
+     */
+    private NpcRecordStore readNpcData(NpcStorage storage) {
+        NpcRecordStore loaded = new NpcRecordStore();
+        File legacyFile = new File(plugin.getDataFolder(), "npcdata.yml");
+        try {
+            if (legacyFile.exists()) {
+                // 旧版数据：导入后重写存储
+                Map<UUID, IslandNpcRecord> imported = loadLegacyNpcData(legacyFile);
+                storage.open(new HashMap<>());
+                storage.rewrite(imported.values(), 0);
+                loaded.putAll(imported.values());
+
+                File backupFile = new File(plugin.getDataFolder(), "npcdata.yml.bak");
+                java.nio.file.Files.move(legacyFile.toPath(), backupFile.toPath(),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                plugin.getLogger().info("已将 npcdata.yml 中的 " + imported.size()
+                    + " 个岛屿导入 " + storage.getName() + "（原文件备份为 npcdata.yml.bak）");
+            } else {
+                Map<UUID, IslandNpcRecord> replayed = new HashMap<>();
+                long records = storage.open(replayed);
+                if (replayed.isEmpty() && !(storage instanceof NpcRecordLog)) {
+                    importRecordLog(storage, replayed);
+                }
+                loaded.putAll(replayed.values());
+                if (debugLog.isEnabled()) {
+                    debugLog.debug("从 {} 读取了 {} 条记录", storage.getName(), records);
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Cannot load " + storage.getName() + ": " + e.getMessage());
+        }
+        return loaded;
+    }
+
+    /**
+     * 将已有的 npcdata.log 导入到其他存储（切换存储类型时）
+     * @param storage 目标存储（已打开且为空）
+     * @param records 导入的记录
+     */
+    private void importRecordLog(NpcStorage storage, Map<UUID, IslandNpcRecord> records) throws IOException {
+        NpcRecordLog log = NpcStorageFactory.createRecordLog(plugin);
+        if (!log.exists()) {
+            return;
+        }
+        try {
+            log.open(records);
+        } finally {
+            log.close();
+        }
+        storage.rewrite(records.values(), 0);
+
+        File logFile = new File(plugin.getDataFolder(), log.getName());
+        File backupFile = new File(plugin.getDataFolder(), log.getName() + ".bak");
+        java.nio.file.Files.move(logFile.toPath(), backupFile.toPath(),
+            java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        plugin.getLogger().info("已将 " + log.getName() + " 中的 " + records.size() + " 个岛屿导入 "
+            + storage.getName() + "（原文件备份为 " + backupFile.getName() + "）");
+    }
+
+    /**
+     * 读取旧版 npcdata.yml
+     */
+    private Map<UUID, IslandNpcRecord> loadLegacyNpcData(File legacyFile) {
+        Map<UUID, IslandNpcRecord> records = new HashMap<>();
+        ConfigurationSection section = YamlConfiguration.loadConfiguration(legacyFile).getConfigurationSection("npcs");
+        if (section == null) {
+            return records;
+        }
+        for (String key : section.getKeys(false)) {
+            ConfigurationSection data = section.getConfigurationSection(key);
+            if (data == null) {
+                continue;
+            }
+            UUID islandUUID;
+            try {
+                islandUUID = UUID.fromString(key);
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("无效的岛屿UUID: " + key);
+                continue;
+            }
+            IslandNpcRecord record = IslandNpcRecord.fromConfig(islandUUID, data);
+            try {
+                NpcRecordLog.checkEncodable(record);
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().severe("岛屿 " + key + " 的NPC记录无法导入（保留在 npcdata.yml.bak 中）: " + e.getMessage());
+                continue;
+            }
+            records.put(islandUUID, record);
+        }
+        return records;
     }
     
     /**
@@ -71,7 +301,10 @@ public class ConfigManager {
             plugin.getLogger().warning("配置文件版本 (" + configVersion + ") 比插件版本 (" + CURRENT_CONFIG_VERSION + ") 更新！");
             plugin.getLogger().warning("这可能会导致问题。建议删除配置文件并重新生成。");
         } else {
-            // 版本匹配，无需更新
+            // 版本匹配；版本 3 的配置项是逐步加入的，已是版本 3 的配置也补齐缺少的项
+            if (addVersion3Keys()) {
+                plugin.saveConfig();
+            }
             plugin.getLogger().info("配置文件版本: " + configVersion + " (最新)");
         }
     }
@@ -158,15 +391,102 @@ public class ConfigManager {
                 }
                 break;
                 
+            case 3:
+                // 从版本2到版本3的迁移: 补齐版本 3 的配置项
+                addVersion3Keys();
+                break;
+                
             // 未来版本的迁移逻辑在这里添加
-            // case 3:
-            //     // 从版本2到版本3的迁移
+            // case 4:
+            //     // 从版本3到版本4的迁移
             //     break;
         }
         
         plugin.getLogger().info("迁移到版本 " + toVersion + " 完成");
     }
     
+    /**
+     * 补齐版本 3 的配置项（只添加不存在的项，可重复执行）
+     * 版本 3 的配置项随各个功能逐步加入，已经迁移到版本 3 的配置也可能缺少后来加入的项，
+     * 因此除了版本迁移外，每次加载配置时都会调用
+     * @return 是否添加了配置项
+     */
+    private boolean addVersion3Keys() {
+        boolean changed = false;
+        // 启动分帧恢复
+        if (!config.contains("performance.spawn-tick-budget-ms")) {
+            config.set("performance.spawn-tick-budget-ms", 5.0);
+            changed = true;
+        }
+        if (!config.contains("performance.spawn-progress-interval")) {
+            config.set("performance.spawn-progress-interval", 5);
+            changed = true;
+        }
+        // 启动协调器
+        if (!config.contains("performance.startup-timeout")) {
+            config.set("performance.startup-timeout", 60);
+            changed = true;
+        }
+        // 区块懒加载
+        if (!config.contains("performance.lazy-chunk-loading")) {
+            config.set("performance.lazy-chunk-loading", false);
+            changed = true;
+        }
+        // 后台刷盘
+        if (!config.contains("performance.save-max-latency-ms")) {
+            config.set("performance.save-max-latency-ms", 2000);
+            changed = true;
+        }
+        if (!config.contains("performance.save-max-batch")) {
+            config.set("performance.save-max-batch", 512);
+            changed = true;
+        }
+        // 配置文件监听
+        if (!config.contains("performance.watch-config")) {
+            config.set("performance.watch-config", true);
+            changed = true;
+        }
+        // 存储后端
+        if (!config.contains("storage.type")) {
+            config.set("storage.type", "LOG");
+            changed = true;
+        }
+        if (!config.contains("storage.shards")) {
+            config.set("storage.shards", 16);
+            changed = true;
+        }
+        if (!config.contains("storage.world-pdc")) {
+            config.set("storage.world-pdc", false);
+            changed = true;
+        }
+        if (!config.contains("storage.island-data")) {
+            config.set("storage.island-data", false);
+            changed = true;
+        }
+        // 按类别的日志级别
+        if (!config.contains("log-levels")) {
+            config.createSection("log-levels");
+            changed = true;
+        }
+        // 统计指令
+        if (!config.contains("messages.stats")) {
+            config.set("messages.stats", "&e记录: &f{records} &7| &e已生成NPC: &f{live} &7| &e已处理世界卸载: &f{worlds} &7| &e已释放NPC: &f{npcs} &7| &e已释放全息图: &f{holograms}");
+            changed = true;
+        }
+        if (!config.contains("messages.help-stats")) {
+            config.set("messages.help-stats", "&e/islandnpc stats &7- 查看NPC内存统计（管理员）");
+            changed = true;
+        }
+        if (!config.contains("messages.stats-save")) {
+            config.set("messages.stats-save", "&e待保存: &f{depth} &7(峰值 {peak}) &7| &e刷盘次数: &f{flushes} &7| &e写入记录: &f{written} &7| &e耗时: &f{last}ms &7(最大 {max}ms) &7| &e背压等待: &f{backpressure} &7次 ({backpressure_ms}ms)");
+            changed = true;
+        }
+        if (changed) {
+            plugin.getLogger().info("添加了缺少的版本 3 配置项");
+        }
+        return changed;
+    }
+    
     /**
      * 恢复用户的自定义设置
      * @param oldConfig 旧配置
@@ -228,19 +548,241 @@ public class ConfigManager {
             }
         }
         
+        // 性能设置
+        if (oldConfig.contains("performance")) {
+            newConfig.set("performance", oldConfig.getConfigurationSection("performance"));
+        }
+
+        // 存储设置
+        if (oldConfig.contains("storage")) {
+            newConfig.set("storage", oldConfig.getConfigurationSection("storage"));
+        }
+
         // Debug模式
         if (oldConfig.contains("debug")) {
             newConfig.set("debug", oldConfig.getBoolean("debug"));
         }
+        if (oldConfig.contains("log-levels")) {
+            newConfig.set("log-levels", oldConfig.getConfigurationSection("log-levels"));
+        }
         
         plugin.getLogger().info("用户自定义设置已恢复");
     }
 
-    public void saveNpcData() {
+    /**
+     * 获取岛屿的记录
+     * NPC数据完整加载完成之前，内存中没有的记录通过索引直接从磁盘读取
+     * @param islandUUID 岛屿UUID
+     * @return 记录，如果不存在返回 null
+     */
+    public IslandNpcRecord getNpcRecord(UUID islandUUID) {
+        IslandNpcRecord record = npcRecords.get(islandUUID);
+        if (record != null || npcDataLoaded || pendingLookup == null || removedBeforeLoad.contains(islandUUID)) {
+            return record;
+        }
+        return pendingLookup.get(islandUUID);
+    }
+
+    /**
+     * 关闭加载期间使用的索引查询
+     */
+    private void closePendingLookup() {
+        if (pendingLookup != null) {
+            pendingLookup.close();
+            pendingLookup = null;
+        }
+    }
+
+    /**
+     * 保存单个岛屿的记录（标记为待保存，与岛屿总数无关）
+     * 在主线程调用，由刷盘线程在最大延迟内写入磁盘
+     * @param record 岛屿记录
+     * @throws IllegalArgumentException 世界名等字段超过记录格式允许的长度（记录不会被保存）
+     */
+    public void putNpcRecord(IslandNpcRecord record) {
+        NpcRecordLog.checkEncodable(record);
+        UUID islandUUID = record.getIslandUUID();
+        IslandNpcRecord previous = npcRecords.put(record);
+        if (islandNpcStorage != null) {
+            // 保存到岛屿数据，第一次写入时从全局存储（或世界）中删除
+            boolean fromGlobal = !islandNpcStorage.isIslandStored(islandUUID);
+            if (!fromGlobal && record.equals(previous)) {
+                return;
+            }
+            if (islandNpcStorage.write(record)) {
+                if (fromGlobal) {
+                    if (worldNpcStorage != null && previous != null && worldNpcStorage.isWorldStored(islandUUID)) {
+                        worldNpcStorage.remove(previous);
+                    } else if (npcDataFlusher != null) {
+                        npcDataFlusher.markDirty(islandUUID, null);
+                    }
+                }
+                return;
+            }
+            // 岛屿插件未就绪或岛屿不存在：改为保存在全局存储
+            if (!fromGlobal) {
+                previous = null;
+            }
+        }
+        if (worldNpcStorage != null) {
+            if (worldNpcStorage.accepts(record)) {
+                // SlimeWorld 岛屿：写入世界，第一次写入时从全局存储中删除
+                boolean fromGlobal = !worldNpcStorage.isWorldStored(islandUUID);
+                if (fromGlobal || !record.equals(previous)) {
+                    worldNpcStorage.write(record);
+                }
+                if (fromGlobal && npcDataFlusher != null) {
+                    npcDataFlusher.markDirty(islandUUID, null);
+                }
+                return;
+            }
+            if (worldNpcStorage.isWorldStored(islandUUID)) {
+                // 移出了 SlimeWorld，改为保存在全局存储
+                worldNpcStorage.remove(previous);
+                previous = null;
+            }
+        }
+        // 内容未变化时不保存（例如区块加载时重新生成NPC）
+        if (npcDataFlusher != null && !record.equals(previous)) {
+            npcDataFlusher.markDirty(islandUUID, record);
+        }
+    }
+
+    /**
+     * 删除单个岛屿的记录
+     * @param islandUUID 岛屿UUID
+     */
+    public void removeNpcRecord(UUID islandUUID) {
+        IslandNpcRecord previous = npcRecords.remove(islandUUID);
+        if (worldNpcStorage != null && previous != null && worldNpcStorage.isWorldStored(islandUUID)) {
+            worldNpcStorage.remove(previous);
+        }
+        if (islandNpcStorage != null && islandNpcStorage.isIslandStored(islandUUID)) {
+            islandNpcStorage.remove(islandUUID);
+        }
+        if (!npcDataLoaded) {
+            removedBeforeLoad.add(islandUUID);
+        }
+        if (npcDataFlusher != null) {
+            npcDataFlusher.markDirty(islandUUID, null);
+        }
+    }
+
+    /**
+     * 读取世界中保存的NPC记录（storage.world-pdc）
+     * 内存中已有的记录（来自全局存储）优先，世界中的同一岛屿记录视为过期并删除
+     * @param world 已加载的世界
+     * @return 读取的岛屿数量
+     */
+    public int loadWorldNpcData(World world) {
+        if (worldNpcStorage == null || world == null) {
+            return 0;
+        }
+        com.magicbili.islandnpc.api.IslandProvider islandProvider = plugin.getIslandProvider();
+        int count = 0;
+        for (IslandNpcRecord record : worldNpcStorage.load(world)) {
+            UUID islandUUID = record.getIslandUUID();
+            if (npcRecords.contains(islandUUID) && !worldNpcStorage.isWorldStored(islandUUID)) {
+                worldNpcStorage.removeKey(world, islandUUID);
+                continue;
+            }
+            // 世界未加载时删除的岛屿
+            if (islandProvider != null && islandProvider.isReady() && !islandProvider.islandExists(islandUUID)) {
+                worldNpcStorage.removeKey(world, islandUUID);
+                debugLog.debug("世界 {} 中的岛屿 {} 已不存在，删除记录", world.getName(), islandUUID);
+                continue;
+            }
+            npcRecords.put(record);
+            worldNpcStorage.markWorldStored(islandUUID);
+            count++;
+        }
+        if (count > 0 && debugLog.isEnabled()) {
+            debugLog.debug("从世界 {} 读取了 {} 个岛屿的NPC记录", world.getName(), count);
+        }
+        return count;
+    }
+
+    /**
+     * 读取岛屿插件的岛屿数据中保存的NPC记录（storage.island-data）
+     * 在NPC数据加载完成且岛屿插件就绪后调用；内存中已有的记录（来自全局存储）优先，
+     * 岛屿数据中的同一岛屿记录视为过期并删除。解散的岛屿连同岛屿数据一起被岛屿插件删除，不需要额外清理
+     * @return 读取的岛屿数量
+     */
+    public int loadIslandNpcData() {
+        if (islandNpcStorage == null) {
+            return 0;
+        }
+        com.magicbili.islandnpc.api.IslandProvider islandProvider = plugin.getIslandProvider();
+        long start = System.nanoTime();
+        int count = 0;
+        for (IslandNpcRecord record : islandNpcStorage.loadAll()) {
+            UUID islandUUID = record.getIslandUUID();
+            if (npcRecords.contains(islandUUID) && !islandNpcStorage.isIslandStored(islandUUID)) {
+                islandProvider.removeNpcData(islandUUID);
+                continue;
+            }
+            npcRecords.put(record);
+            islandNpcStorage.markIslandStored(islandUUID);
+            count++;
+        }
+        if (debugLog.isEnabled()) {
+            debugLog.debug("从岛屿数据读取了 {} 个岛屿的NPC记录，耗时 {} ms", count, (System.nanoTime() - start) / 1_000_000);
+        }
+        return count;
+    }
+
+    /**
+     * 世界卸载后从内存中移除保存在该世界中的记录（记录仍保存在世界中）
+     * @param world 正在卸载的世界
+     */
+    public void unloadWorldNpcData(World world) {
+        if (worldNpcStorage == null || world == null) {
+            return;
+        }
+        for (UUID islandUUID : new ArrayList<>(npcRecords.getIslandsInWorld(world.getName()))) {
+            if (worldNpcStorage.isWorldStored(islandUUID)) {
+                npcRecords.remove(islandUUID);
+                worldNpcStorage.forget(islandUUID);
+            }
+        }
+    }
+
+    /**
+     * 关闭NPC数据存储
+     * 关闭时只写入待保存的变更（按岛屿追加或 UPSERT），不整体重写存储；
+     * 整理由刷盘线程在存储需要时执行
+     */
+    public void closeNpcData() {
+        if (npcStorage == null) {
+            return;
+        }
+        closePendingLookup();
+        awaitNpcDataRead();
+        // 写入剩余的变更后再关闭
+        npcDataFlusher.shutdown();
         try {
-            npcDataConfig.save(npcDataFile);
+            npcStorage.flush();
+            npcStorage.close();
         } catch (IOException e) {
-            plugin.getLogger().severe("Cannot save npcdata.yml: " + e.getMessage());
+            plugin.getLogger().severe("Cannot close " + npcStorage.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 等待异步读取完成：存储在 open() 完成之前无法写入，加载期间的变更会丢失
+     * 读取任务还没有开始时（启用后立即关闭）直接在当前线程打开存储
+     */
+    private void awaitNpcDataRead() {
+        if (npcDataReadStarted.compareAndSet(false, true)) {
+            readNpcData(npcStorage);
+            return;
+        }
+        try {
+            if (!npcDataRead.await(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("等待 " + npcStorage.getName() + " 读取超时，加载期间的NPC数据变更可能未保存");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -248,24 +790,42 @@ public class ConfigManager {
         return config;
     }
 
-    public FileConfiguration getNpcDataConfig() {
-        return npcDataConfig;
+    /**
+     * 获取预解析的配置快照（任意线程）
+     * 需要多次读取配置的逻辑应先取一次快照，保证读到的值来自同一次加载
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 获取NPC数据刷盘线程（用于统计）
+     */
+    public NpcDataFlusher getNpcDataFlusher() {
+        return npcDataFlusher;
+    }
+
+    /**
+     * 获取岛屿NPC记录存储
+     */
+    public NpcRecordStore getNpcRecords() {
+        return npcRecords;
     }
 
     public String getDialogId() {
-        return config.getString("npc.dialog-id", "default_dialog");
+        return snapshot.getDialogId();
     }
 
     public double getSpawnOffsetX() {
-        return config.getDouble("npc.spawn-offset.x", 0.0);
+        return snapshot.getSpawnOffsetX();
     }
 
     public double getSpawnOffsetY() {
-        return config.getDouble("npc.spawn-offset.y", 0.0);
+        return snapshot.getSpawnOffsetY();
     }
 
     public double getSpawnOffsetZ() {
-        return config.getDouble("npc.spawn-offset.z", 5.0);
+        return snapshot.getSpawnOffsetZ();
     }
 
     /**
@@ -273,7 +833,7 @@ public class ConfigManager {
      * @return Yaw角度（0-360）
      */
     public float getNpcYaw() {
-        return (float) config.getDouble("npc.rotation.yaw", 180.0);
+        return snapshot.getNpcYaw();
     }
 
     /**
@@ -281,39 +841,39 @@ public class ConfigManager {
      * @return Pitch角度（-90到90）
      */
     public float getNpcPitch() {
-        return (float) config.getDouble("npc.rotation.pitch", 0.0);
+        return snapshot.getNpcPitch();
     }
 
     public String getNpcEntityType() {
-        return config.getString("npc.entity-type", "VILLAGER").toUpperCase();
+        return snapshot.getNpcEntityTypeName();
     }
 
     public String getNpcSkin() {
-        return config.getString("npc.skin", "");
+        return snapshot.getNpcSkin();
     }
 
     public String getNpcProvider() {
-        return config.getString("npc.provider", "CITIZENS").toUpperCase();
+        return snapshot.getNpcProvider();
     }
 
     public boolean isDefaultPermissions() {
-        return config.getBoolean("permissions.default", true);
+        return snapshot.isDefaultPermissions();
     }
 
     public boolean isHologramEnabled() {
-        return config.getBoolean("npc.hologram.enabled", true);
+        return snapshot.isHologramEnabled();
     }
 
     public java.util.List<String> getHologramLines() {
-        return config.getStringList("npc.hologram.lines");
+        return snapshot.getHologramLines();
     }
 
     public double getHologramLineHeight() {
-        return config.getDouble("npc.hologram.line-height", -1);
+        return snapshot.getHologramLineHeight();
     }
 
     public int getHologramViewRange() {
-        return config.getInt("npc.hologram.view-range", 30);
+        return snapshot.getHologramViewRange();
     }
 
     /**
@@ -321,7 +881,7 @@ public class ConfigManager {
      * @return Y轴偏移量（格数）
      */
     public double getHologramYOffset() {
-        return config.getDouble("npc.hologram.position.y-offset", 2.8);
+        return snapshot.getHologramYOffset();
     }
 
     /**
@@ -329,7 +889,7 @@ public class ConfigManager {
      * @return 行间距（格数）
      */
     public double getHologramLineSpacing() {
-        return config.getDouble("npc.hologram.position.line-spacing", 0.3);
+        return snapshot.getHologramLineSpacing();
     }
 
     /**
@@ -337,7 +897,7 @@ public class ConfigManager {
      * @return true 如果启用背景
      */
     public boolean isHologramBackgroundEnabled() {
-        return config.getBoolean("npc.hologram.background.enabled", false);
+        return snapshot.isHologramBackgroundEnabled();
     }
 
     /**
@@ -345,17 +905,90 @@ public class ConfigManager {
      * @return ARGB颜色值
      */
     public int getHologramBackgroundColor() {
-        String colorStr = config.getString("npc.hologram.background.color", "0x00000000");
-        try {
-            // 支持 0x 开头的十六进制格式
-            if (colorStr.startsWith("0x") || colorStr.startsWith("0X")) {
-                return (int) Long.parseLong(colorStr.substring(2), 16);
-            }
-            return Integer.parseInt(colorStr);
-        } catch (NumberFormatException e) {
-            plugin.getLogger().warning("无效的全息图背景颜色配置: " + colorStr + "，使用默认透明色");
-            return 0x00000000; // 默认完全透明
-        }
+        return snapshot.getHologramBackgroundColor();
+    }
+
+    /**
+     * 获取启动恢复NPC时每 tick 可用的时间预算
+     * @return 毫秒数（服务器每 tick 共 50ms）
+     */
+    public double getSpawnTickBudgetMs() {
+        return snapshot.getSpawnTickBudgetMs();
+    }
+
+    /**
+     * 获取启动恢复NPC时进度日志的输出间隔
+     * @return 秒数
+     */
+    public int getSpawnProgressInterval() {
+        return snapshot.getSpawnProgressInterval();
+    }
+
+    /**
+     * 获取启动时等待依赖插件就绪的最长时间
+     * @return 秒数
+     */
+    public int getStartupTimeout() {
+        return snapshot.getStartupTimeout();
+    }
+
+    /**
+     * 获取NPC数据变更写入磁盘的最大延迟
+     * @return 毫秒数
+     */
+    public long getSaveMaxLatencyMs() {
+        return snapshot.getSaveMaxLatencyMs();
+    }
+
+    /**
+     * 获取每次写入磁盘的最大岛屿数量
+     */
+    public int getSaveMaxBatch() {
+        return snapshot.getSaveMaxBatch();
+    }
+
+    /**
+     * 获取NPC数据存储类型（LOG, SHARDED, SQLITE），需要重启生效
+     */
+    public String getStorageType() {
+        return snapshot.getStorageType();
+    }
+
+    /**
+     * 是否把 SlimeWorld 岛屿的记录保存在世界的 PersistentDataContainer 中，需要重启生效
+     */
+    public boolean isWorldPdcStorage() {
+        return snapshot.isWorldPdcStorage();
+    }
+
+    /**
+     * 是否把NPC记录保存在岛屿插件的岛屿数据中（SuperiorSkyblock2 岛屿 PersistentDataContainer / BentoBox 岛屿元数据），需要重启生效
+     */
+    public boolean isIslandDataStorage() {
+        return snapshot.isIslandDataStorage();
+    }
+
+    /**
+     * 获取分片存储的分片数量（1-256），需要重启生效
+     */
+    public int getStorageShards() {
+        return snapshot.getStorageShards();
+    }
+
+    /**
+     * 是否启用区块懒加载NPC（只在区块加载时生成，区块卸载时释放）
+     * 需要重启生效
+     */
+    public boolean isLazyChunkLoading() {
+        return snapshot.isLazyChunkLoading();
+    }
+
+    /**
+     * 是否监听 config.yml 的修改并自动重载
+     * 需要重启生效
+     */
+    public boolean isWatchConfig() {
+        return snapshot.isWatchConfig();
     }
 
     /**
@@ -364,8 +997,7 @@ public class ConfigManager {
      * @return Colored message
      */
     public String getMessage(String key) {
-        String message = config.getString("messages." + key, key);
-        return ChatColor.translateAlternateColorCodes('&', message);
+        return snapshot.getMessages().get(key);
     }
 
     /**
@@ -374,7 +1006,7 @@ public class ConfigManager {
      * @return Prefixed colored message
      */
     public String getMessageWithPrefix(String key) {
-        return getPrefix() + getMessage(key);
+        return snapshot.getMessages().getWithPrefix(key);
     }
 
     /**
@@ -384,20 +1016,11 @@ public class ConfigManager {
      * @return Colored message with replacements
      */
     public String getMessage(String key, String... replacements) {
-        String message = getMessage(key);
-        
         if (replacements.length % 2 != 0) {
             plugin.getLogger().warning("Invalid placeholder replacements for message: " + key);
-            return message;
+            return getMessage(key);
         }
-        
-        for (int i = 0; i < replacements.length; i += 2) {
-            String placeholder = "{" + replacements[i] + "}";
-            String value = replacements[i + 1];
-            message = message.replace(placeholder, value);
-        }
-        
-        return message;
+        return snapshot.getMessages().render(key, replacements);
     }
 
     /**
@@ -405,8 +1028,7 @@ public class ConfigManager {
      * @return Colored prefix
      */
     public String getPrefix() {
-        return ChatColor.translateAlternateColorCodes('&', 
-            config.getString("messages.prefix", "&8[&6IslandNpc&8]&r "));
+        return snapshot.getMessages().getPrefix();
     }
 
     /**
@@ -414,6 +1036,6 @@ public class ConfigManager {
      * @return true 如果启用Debug模式
      */
     public boolean isDebugEnabled() {
-        return config.getBoolean("debug", false);
+        return snapshot.isDebugEnabled();
     }
 }
@@ -0,0 +1,379 @@
+package com.magicbili.islandnpc.config;
+
+import com.magicbili.islandnpc.utils.DebugLogger;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.EntityType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * 预解析的不可变配置快照
+ * 在 loadConfig() 时一次性读取并解析（实体类型、背景颜色、全息图文本模板、消息表等），
+ * 由 ConfigManager 通过 volatile 引用发布，读取时只是普通的字段访问，重载时整体替换
+ *
+ * 可以在任意线程读取
+ *
+ * @author magicbili
+ */
+public final class ConfigSnapshot {
+
+    private static final String OWNER_PLACEHOLDER = "{owner}";
+
+    private final boolean debug;
+    // 按 DebugLogger.Category 序号保存的类别Debug开关
+    private final boolean[] debugCategories;
+
+    private final String dialogId;
+    private final double spawnOffsetX;
+    private final double spawnOffsetY;
+    private final double spawnOffsetZ;
+    private final float npcYaw;
+    private final float npcPitch;
+    private final String npcEntityTypeName;
+    private final EntityType npcEntityType;
+    private final String npcSkin;
+    private final String npcProvider;
+    private final boolean defaultPermissions;
+
+    private final boolean hologramEnabled;
+    private final String hologramProvider;
+    private final List<String> hologramLines;
+    private final List<LineTemplate> hologramTemplates;
+    private final double hologramLineHeight;
+    private final int hologramViewRange;
+    private final double hologramYOffset;
+    private final double hologramLineSpacing;
+    private final boolean hologramBackgroundEnabled;
+    private final int hologramBackgroundColor;
+
+    private final double spawnTickBudgetMs;
+    private final int spawnProgressInterval;
+    private final int startupTimeout;
+    private final long saveMaxLatencyMs;
+    private final int saveMaxBatch;
+    private final boolean lazyChunkLoading;
+    private final boolean watchConfig;
+
+    private final String storageType;
+    private final int storageShards;
+    private final boolean worldPdcStorage;
+    private final boolean islandDataStorage;
+
+    private final MessageCatalog messages;
+
+    ConfigSnapshot(FileConfiguration config, Logger logger) {
+        debug = config.getBoolean("debug", false);
+        DebugLogger.Category[] categories = DebugLogger.Category.values();
+        debugCategories = new boolean[categories.length];
+        for (DebugLogger.Category category : categories) {
+            debugCategories[category.ordinal()] = parseLevel(config.getString("log-levels." + category.getKey()), debug, logger);
+        }
+
+        dialogId = config.getString("npc.dialog-id", "default_dialog");
+        spawnOffsetX = config.getDouble("npc.spawn-offset.x", 0.0);
+        spawnOffsetY = config.getDouble("npc.spawn-offset.y", 0.0);
+        spawnOffsetZ = config.getDouble("npc.spawn-offset.z", 5.0);
+        npcYaw = (float) config.getDouble("npc.rotation.yaw", 180.0);
+        npcPitch = (float) config.getDouble("npc.rotation.pitch", 0.0);
+        npcEntityTypeName = config.getString("npc.entity-type", "VILLAGER").toUpperCase();
+        npcEntityType = parseEntityType(npcEntityTypeName, logger);
+        npcSkin = config.getString("npc.skin", "");
+        npcProvider = config.getString("npc.provider", "CITIZENS").toUpperCase();
+        defaultPermissions = config.getBoolean("permissions.default", true);
+
+        hologramEnabled = config.getBoolean("npc.hologram.enabled", true);
+        hologramProvider = config.getString("npc.hologram.provider", "FANCYHOLOGRAMS").toUpperCase();
+        hologramLines = Collections.unmodifiableList(new ArrayList<>(config.getStringList("npc.hologram.lines")));
+        List<String> templateLines = hologramLines.isEmpty()
+            ? List.of("§b§l" + OWNER_PLACEHOLDER + " 的岛屿", "§7右键点击交互")
+            : hologramLines;
+        List<LineTemplate> templates = new ArrayList<>(templateLines.size());
+        for (String line : templateLines) {
+            templates.add(new LineTemplate(line));
+        }
+        hologramTemplates = Collections.unmodifiableList(templates);
+        hologramLineHeight = config.getDouble("npc.hologram.line-height", -1);
+        hologramViewRange = config.getInt("npc.hologram.view-range", 30);
+        hologramYOffset = config.getDouble("npc.hologram.position.y-offset", 2.8);
+        hologramLineSpacing = config.getDouble("npc.hologram.position.line-spacing", 0.3);
+        hologramBackgroundEnabled = config.getBoolean("npc.hologram.background.enabled", false);
+        hologramBackgroundColor = parseColor(config.get("npc.hologram.background.color", "0x00000000"), logger);
+
+        spawnTickBudgetMs = Math.max(0.1, config.getDouble("performance.spawn-tick-budget-ms", 5.0));
+        spawnProgressInterval = Math.max(1, config.getInt("performance.spawn-progress-interval", 5));
+        startupTimeout = Math.max(1, config.getInt("performance.startup-timeout", 60));
+        saveMaxLatencyMs = Math.max(50L, config.getLong("performance.save-max-latency-ms", 2000L));
+        saveMaxBatch = Math.max(1, config.getInt("performance.save-max-batch", 512));
+        lazyChunkLoading = config.getBoolean("performance.lazy-chunk-loading", false);
+        watchConfig = config.getBoolean("performance.watch-config", true);
+
+        storageType = config.getString("storage.type", "LOG").toUpperCase();
+        storageShards = Math.max(1, Math.min(256, config.getInt("storage.shards", 16)));
+        worldPdcStorage = config.getBoolean("storage.world-pdc", false);
+        islandDataStorage = config.getBoolean("storage.island-data", false);
+
+        messages = new MessageCatalog(config);
+    }
+
+    /**
+     * 解析类别日志级别：DEBUG 输出Debug日志，INFO 不输出，未设置时跟随全局 debug
+     */
+    private static boolean parseLevel(String level, boolean debug, Logger logger) {
+        if (level == null) {
+            return debug;
+        }
+        switch (level.toUpperCase()) {
+            case "DEBUG":
+                return true;
+            case "INFO":
+                return false;
+            default:
+                logger.warning("无效的日志级别: " + level + "，使用全局 debug 设置");
+                return debug;
+        }
+    }
+
+    /**
+     * 解析实体类型，无效时使用 VILLAGER
+     */
+    private static EntityType parseEntityType(String name, Logger logger) {
+        try {
+            return EntityType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            logger.warning("无效的实体类型: " + name + "，使用默认值 VILLAGER");
+            return EntityType.VILLAGER;
+        }
+    }
+
+    /**
+     * 解析 ARGB 颜色
+     * YAML 会把未加引号的 0x40000000 直接读成数字，加引号时按 0x 开头的十六进制或十进制字符串解析
+     */
+    private static int parseColor(Object value, Logger logger) {
+        if (value instanceof Number) {
+            return (int) ((Number) value).longValue();
+        }
+        String colorStr = String.valueOf(value).trim();
+        try {
+            if (colorStr.startsWith("0x") || colorStr.startsWith("0X")) {
+                return (int) Long.parseLong(colorStr.substring(2), 16);
+            }
+            return (int) Long.parseLong(colorStr);
+        } catch (NumberFormatException e) {
+            logger.warning("无效的全息图背景颜色配置: " + colorStr + "，使用默认透明色");
+            return 0x00000000; // 默认完全透明
+        }
+    }
+
+    public boolean isDebugEnabled() {
+        return debug;
+    }
+
+    /**
+     * 类别是否输出Debug日志
+     */
+    public boolean isDebugEnabled(DebugLogger.Category category) {
+        return debugCategories[category.ordinal()];
+    }
+
+    public String getDialogId() {
+        return dialogId;
+    }
+
+    public double getSpawnOffsetX() {
+        return spawnOffsetX;
+    }
+
+    public double getSpawnOffsetY() {
+        return spawnOffsetY;
+    }
+
+    public double getSpawnOffsetZ() {
+        return spawnOffsetZ;
+    }
+
+    public float getNpcYaw() {
+        return npcYaw;
+    }
+
+    public float getNpcPitch() {
+        return npcPitch;
+    }
+
+    /**
+     * @return 配置中的实体类型名称（大写）
+     */
+    public String getNpcEntityTypeName() {
+        return npcEntityTypeName;
+    }
+
+    /**
+     * @return 解析后的实体类型，配置无效时为 VILLAGER
+     */
+    public EntityType getNpcEntityType() {
+        return npcEntityType;
+    }
+
+    public String getNpcSkin() {
+        return npcSkin;
+    }
+
+    public String getNpcProvider() {
+        return npcProvider;
+    }
+
+    public boolean isDefaultPermissions() {
+        return defaultPermissions;
+    }
+
+    public boolean isHologramEnabled() {
+        return hologramEnabled;
+    }
+
+    public String getHologramProvider() {
+        return hologramProvider;
+    }
+
+    /**
+     * @return 配置中的全息图文本行（不可修改）
+     */
+    public List<String> getHologramLines() {
+        return hologramLines;
+    }
+
+    /**
+     * @return 预拆分的全息图文本模板，未配置时为默认文本（不可修改）
+     */
+    public List<LineTemplate> getHologramTemplates() {
+        return hologramTemplates;
+    }
+
+    /**
+     * 用岛主名称生成全息图文本
+     * @param ownerName 岛主名称
+     * @return 文本行
+     */
+    public List<String> renderHologramLines(String ownerName) {
+        List<String> lines = new ArrayList<>(hologramTemplates.size());
+        for (LineTemplate template : hologramTemplates) {
+            lines.add(template.render(ownerName));
+        }
+        return lines;
+    }
+
+    public double getHologramLineHeight() {
+        return hologramLineHeight;
+    }
+
+    public int getHologramViewRange() {
+        return hologramViewRange;
+    }
+
+    public double getHologramYOffset() {
+        return hologramYOffset;
+    }
+
+    public double getHologramLineSpacing() {
+        return hologramLineSpacing;
+    }
+
+    public boolean isHologramBackgroundEnabled() {
+        return hologramBackgroundEnabled;
+    }
+
+    /**
+     * @return ARGB 颜色值
+     */
+    public int getHologramBackgroundColor() {
+        return hologramBackgroundColor;
+    }
+
+    public double getSpawnTickBudgetMs() {
+        return spawnTickBudgetMs;
+    }
+
+    public int getSpawnProgressInterval() {
+        return spawnProgressInterval;
+    }
+
+    public int getStartupTimeout() {
+        return startupTimeout;
+    }
+
+    public long getSaveMaxLatencyMs() {
+        return saveMaxLatencyMs;
+    }
+
+    public int getSaveMaxBatch() {
+        return saveMaxBatch;
+    }
+
+    public boolean isLazyChunkLoading() {
+        return lazyChunkLoading;
+    }
+
+    public boolean isWatchConfig() {
+        return watchConfig;
+    }
+
+    public String getStorageType() {
+        return storageType;
+    }
+
+    public int getStorageShards() {
+        return storageShards;
+    }
+
+    public boolean isWorldPdcStorage() {
+        return worldPdcStorage;
+    }
+
+    public boolean isIslandDataStorage() {
+        return islandDataStorage;
+    }
+
+    /**
+     * @return 预编译的消息表
+     */
+    public MessageCatalog getMessages() {
+        return messages;
+    }
+
+    /**
+     * 预拆分的全息图文本行：按 {owner} 占位符切成固定片段，生成时直接拼接
+     */
+    public static final class LineTemplate {
+
+        private final String[] parts;
+
+        LineTemplate(String line) {
+            List<String> split = new ArrayList<>();
+            int start = 0;
+            int index;
+            while ((index = line.indexOf(OWNER_PLACEHOLDER, start)) >= 0) {
+                split.add(line.substring(start, index));
+                start = index + OWNER_PLACEHOLDER.length();
+            }
+            split.add(line.substring(start));
+            parts = split.toArray(new String[0]);
+        }
+
+        /**
+         * @param ownerName 岛主名称
+         * @return 替换占位符后的文本
+         */
+        public String render(String ownerName) {
+            if (parts.length == 1) {
+                return parts[0];
+            }
+            StringBuilder builder = new StringBuilder(parts[0]);
+            for (int i = 1; i < parts.length; i++) {
+                builder.append(ownerName).append(parts[i]);
+            }
+            return builder.toString();
+        }
+    }
+}
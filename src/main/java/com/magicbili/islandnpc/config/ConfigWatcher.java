@@ -0,0 +1,154 @@
+package com.magicbili.islandnpc.config;
+
+import com.magicbili.islandnpc.IslandNpcPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * config.yml 修改监听线程
+ * 通过 WatchService 监听插件目录，config.yml 保存后在主线程调用 reloadPlugin()，
+ * 由 ConfigDiff 只应用变化的部分
+ *
+ * 编辑器保存时通常会产生多个事件，等待文件稳定（一段时间内没有新事件）后才重载一次；
+ * 重载前先在本线程解析 YAML，格式错误时跳过，避免半保存的文件被当作全部使用默认值
+ *
+ * @author magicbili
+ */
+public class ConfigWatcher implements Runnable {
+
+    private static final String CONFIG_FILE = "config.yml";
+    private static final long SETTLE_MS = 500L;
+
+    private final IslandNpcPlugin plugin;
+    private final File configFile;
+    private WatchService watchService;
+    private volatile boolean running = true;
+    private Thread thread;
+    // 最后一次重载时 config.yml 的修改时间，相同时不重复重载（例如迁移后插件自己保存的配置）
+    private volatile long appliedModified;
+
+    public ConfigWatcher(IslandNpcPlugin plugin) {
+        this.plugin = plugin;
+        this.configFile = new File(plugin.getDataFolder(), CONFIG_FILE);
+    }
+
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            plugin.getDataFolder().toPath().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            plugin.getLogger().warning("无法监听配置文件修改，自动重载已禁用: " + e.getMessage());
+            return;
+        }
+        markApplied();
+        thread = new Thread(this, "IslandNpc-ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                WatchKey key = watchService.take();
+                boolean touched = drain(key);
+                if (!touched) {
+                    continue;
+                }
+                // 等待文件稳定，连续的修改事件合并为一次重载
+                while ((key = watchService.poll(SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    drain(key);
+                }
+                long modified = configFile.lastModified();
+                if (!running || modified == appliedModified || !isValid()) {
+                    continue;
+                }
+                appliedModified = modified;
+                Bukkit.getScheduler().runTask(plugin, this::reload);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+            // shutdown() 关闭了 WatchService
+        }
+    }
+
+    /**
+     * 取出事件并重置 WatchKey
+     * @return 是否包含 config.yml 的修改
+     */
+    private boolean drain(WatchKey key) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                || (event.context() instanceof Path && CONFIG_FILE.equals(event.context().toString()))) {
+                touched = true;
+            }
+        }
+        key.reset();
+        return touched;
+    }
+
+    /**
+     * 检查 config.yml 是否为有效的 YAML
+     */
+    private boolean isValid() {
+        try {
+            new YamlConfiguration().load(configFile);
+            return true;
+        } catch (IOException | InvalidConfigurationException e) {
+            plugin.getLogger().warning("config.yml 格式错误，已跳过自动重载: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void reload() {
+        if (!running || !plugin.isEnabled()) {
+            return;
+        }
+        plugin.getLogger().info("检测到 config.yml 已修改，正在自动重载...");
+        plugin.reloadPlugin();
+        markApplied();
+    }
+
+    /**
+     * 记录当前 config.yml 的修改时间为已应用
+     */
+    private void markApplied() {
+        appliedModified = configFile.lastModified();
+    }
+
+    /**
+     * 停止监听（插件禁用时调用）
+     */
+    public void shutdown() {
+        running = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // 关闭失败时线程为守护线程，随服务器退出
+            }
+        }
+        if (thread != null) {
+            try {
+                thread.join(2000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.magicbili.islandnpc.config;
+
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预编译的消息表
+ * 加载配置时把 messages 下的每条消息翻译颜色代码，并按 {占位符} 拆成固定片段和占位符槽位，
+ * 发送消息时按槽位一次拼接到复用的 StringBuilder 中，不再每次翻译颜色代码和逐个 String.replace
+ *
+ * 随 ConfigSnapshot 一起构建，构建后不可变，可以在任意线程读取
+ *
+ * @author magicbili
+ */
+public final class MessageCatalog {
+
+    private static final String DEFAULT_PREFIX = "&8[&6IslandNpc&8]&r ";
+    private static final int MAX_POOLED_CAPACITY = 1024;
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    private final String prefix;
+    private final Map<String, Template> templates;
+
+    MessageCatalog(FileConfiguration config) {
+        prefix = translate(config.getString("messages.prefix", DEFAULT_PREFIX));
+        Map<String, Template> compiled = new HashMap<>();
+        ConfigurationSection section = config.getConfigurationSection("messages");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                String message = section.getString(key);
+                if (message != null) {
+                    compiled.put(key, new Template(translate(message), prefix));
+                }
+            }
+        }
+        templates = Collections.unmodifiableMap(compiled);
+    }
+
+    /**
+     * @return 翻译颜色代码后的消息前缀
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * 获取消息（不替换占位符），未配置时返回键名本身
+     * @param key 消息键
+     * @return 翻译颜色代码后的消息
+     */
+    public String get(String key) {
+        Template template = templates.get(key);
+        return template != null ? template.text : translate(key);
+    }
+
+    /**
+     * 获取带前缀的消息（不替换占位符）
+     * @param key 消息键
+     * @return 前缀 + 消息
+     */
+    public String getWithPrefix(String key) {
+        Template template = templates.get(key);
+        return template != null ? template.prefixedText : prefix + translate(key);
+    }
+
+    /**
+     * 替换占位符后返回消息
+     * 没有提供值的占位符原样保留
+     * @param key 消息键
+     * @param replacements 占位符名称和值交替排列（不带花括号），长度必须为偶数
+     * @return 替换后的消息
+     */
+    public String render(String key, String... replacements) {
+        Template template = templates.get(key);
+        if (template == null) {
+            return translate(key);
+        }
+        if (template.slots.length == 0) {
+            return template.text;
+        }
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        String[] segments = template.segments;
+        String[] slots = template.slots;
+        builder.append(segments[0]);
+        for (int i = 0; i < slots.length; i++) {
+            String value = valueOf(slots[i], replacements);
+            if (value != null) {
+                builder.append(value);
+            } else {
+                builder.append('{').append(slots[i]).append('}');
+            }
+            builder.append(segments[i + 1]);
+        }
+        String result = builder.toString();
+        // 偶尔的超长消息不长期占用内存
+        if (builder.capacity() > MAX_POOLED_CAPACITY) {
+            BUILDER.remove();
+        }
+        return result;
+    }
+
+    /**
+     * @return 已编译的消息数量
+     */
+    public int size() {
+        return templates.size();
+    }
+
+    /**
+     * 两个消息表的前缀和所有消息文本是否相同
+     */
+    public boolean contentEquals(MessageCatalog other) {
+        if (!prefix.equals(other.prefix) || templates.size() != other.templates.size()) {
+            return false;
+        }
+        for (Map.Entry<String, Template> entry : templates.entrySet()) {
+            Template template = other.templates.get(entry.getKey());
+            if (template == null || !template.text.equals(entry.getValue().text)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String valueOf(String name, String[] replacements) {
+        for (int i = 0; i + 1 < replacements.length; i += 2) {
+            if (name.equals(replacements[i])) {
+                return replacements[i + 1];
+            }
+        }
+        return null;
+    }
+
+    private static String translate(String message) {
+        return ChatColor.translateAlternateColorCodes('&', message);
+    }
+
+    /**
+     * 编译后的单条消息：segments.length == slots.length + 1，
+     * 输出顺序为 segments[0] slots[0] segments[1] ... slots[n-1] segments[n]
+     */
+    private static final class Template {
+
+        private final String text;
+        private final String prefixedText;
+        private final String[] segments;
+        private final String[] slots;
+
+        Template(String text, String prefix) {
+            this.text = text;
+            this.prefixedText = prefix + text;
+            List<String> segmentList = new ArrayList<>();
+            List<String> slotList = new ArrayList<>();
+            int start = 0;
+            int from = 0;
+            int open;
+            while ((open = text.indexOf('{', from)) >= 0) {
+                int close = text.indexOf('}', open + 1);
+                if (close < 0) {
+                    break;
+                }
+                String name = text.substring(open + 1, close);
+                // 只把不含空白和嵌套花括号的 {名称} 视为占位符
+                if (name.isEmpty() || name.indexOf('{') >= 0 || containsWhitespace(name)) {
+                    from = open + 1;
+                    continue;
+                }
+                segmentList.add(text.substring(start, open));
+                slotList.add(name);
+                start = close + 1;
+                from = start;
+            }
+            segmentList.add(text.substring(start));
+            // 没有占位符时只保留整条文本
+            if (slotList.isEmpty()) {
+                segmentList.clear();
+                segmentList.add(text);
+            }
+            this.segments = segmentList.toArray(new String[0]);
+            this.slots = slotList.toArray(new String[0]);
+        }
+
+        private static boolean containsWhitespace(String name) {
+            for (int i = 0; i < name.length(); i++) {
+                if (Character.isWhitespace(name.charAt(i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -30,6 +30,11 @@ public class DecentHologramsProvider implements HologramProvider {
         return "DecentHolograms";
     }
     
+    @Override
+    public boolean isReady() {
+        return org.bukkit.Bukkit.getPluginManager().isPluginEnabled("DecentHolograms");
+    }
+    
     @Override
     public boolean createHologram(String id, Location location, List<String> lines) {
         try {
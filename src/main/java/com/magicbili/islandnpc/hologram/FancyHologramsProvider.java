@@ -2,12 +2,12 @@ package com.magicbili.islandnpc.hologram;
 
 import com.magicbili.islandnpc.IslandNpcPlugin;
 import com.magicbili.islandnpc.api.HologramProvider;
+import com.magicbili.islandnpc.utils.DebugLogger;
 import de.oliver.fancyholograms.api.FancyHologramsPlugin;
 import de.oliver.fancyholograms.api.data.TextHologramData;
 import de.oliver.fancyholograms.api.hologram.Hologram;
 import org.bukkit.Color;
 import org.bukkit.Location;
-import org.bukkit.configuration.ConfigurationSection;
 
 import java.util.HashMap;
 import java.util.List;
@@ -21,10 +21,12 @@ import java.util.Map;
 public class FancyHologramsProvider implements HologramProvider {
     
     private final IslandNpcPlugin plugin;
+    private final DebugLogger debugLog;
     private final Map<String, String> hologramIds; // 我们的ID -> FancyHolograms的ID
     
     public FancyHologramsProvider(IslandNpcPlugin plugin) {
         this.plugin = plugin;
+        this.debugLog = new DebugLogger(plugin, DebugLogger.Category.NPC, "[FancyHolograms] ");
         this.hologramIds = new HashMap<>();
     }
     
@@ -33,6 +35,11 @@ public class FancyHologramsProvider implements HologramProvider {
         return "FancyHolograms";
     }
     
+    @Override
+    public boolean isReady() {
+        return org.bukkit.Bukkit.getPluginManager().isPluginEnabled("FancyHolograms");
+    }
+    
     @Override
     public boolean createHologram(String id, Location location, List<String> lines) {
         try {
@@ -200,7 +207,7 @@ public class FancyHologramsProvider implements HologramProvider {
     /**
      * 创建带背景的岛屿全息图 (FancyHolograms专用)
      */
-    public boolean createIslandHologramWithBackground(String id, Location location, List<String> lines, ConfigurationSection config) {
+    public boolean createIslandHologramWithBackground(String id, Location location, List<String> lines) {
         try {
             if (hologramExists(id)) {
                 plugin.getLogger().warning("全息图已存在: " + id);
@@ -212,39 +219,34 @@ public class FancyHologramsProvider implements HologramProvider {
             data.setText(lines);
             data.setPersistent(false);
             
+            com.magicbili.islandnpc.config.ConfigSnapshot snapshot = plugin.getConfigManager().getSnapshot();
+            
             // 设置可见距离
-            int viewRange = config.getInt("npc.hologram.view-range", 30);
+            int viewRange = snapshot.getHologramViewRange();
             if (viewRange > 0) {
                 data.setVisibilityDistance(viewRange);
             }
             
             // 设置背景
-            boolean backgroundEnabled = config.getBoolean("npc.hologram.background.enabled", false);
+            boolean backgroundEnabled = snapshot.isHologramBackgroundEnabled();
             if (backgroundEnabled) {
-                String colorHex = config.getString("npc.hologram.background.color", "0x40000000");
-                try {
-                    // 解析颜色值 (支持 0x 前缀) - ARGB格式
-                    int argb = (int) Long.parseLong(colorHex.replace("0x", ""), 16);
-                    // 转换为Bukkit Color对象 (支持Alpha通道)
-                    int alpha = (argb >> 24) & 0xFF;
-                    int red = (argb >> 16) & 0xFF;
-                    int green = (argb >> 8) & 0xFF;
-                    int blue = argb & 0xFF;
-                    Color color = Color.fromARGB(alpha, red, green, blue);
-                    data.setBackground(color);
-                    
-                    if (plugin.getConfigManager().isDebugEnabled()) {
-                        plugin.getLogger().info("[DEBUG] 设置背景颜色: ARGB(" + alpha + "," + red + "," + green + "," + blue + ")");
-                    }
-                } catch (NumberFormatException e) {
-                    plugin.getLogger().warning("无效的背景颜色值: " + colorHex);
+                // 颜色在加载配置时已解析为 ARGB
+                int argb = snapshot.getHologramBackgroundColor();
+                // 转换为Bukkit Color对象 (支持Alpha通道)
+                int alpha = (argb >> 24) & 0xFF;
+                int red = (argb >> 16) & 0xFF;
+                int green = (argb >> 8) & 0xFF;
+                int blue = argb & 0xFF;
+                Color color = Color.fromARGB(alpha, red, green, blue);
+                data.setBackground(color);
+                
+                if (debugLog.isEnabled()) {
+                    debugLog.debug("设置背景颜色: ARGB({},{},{},{})", alpha, red, green, blue);
                 }
             } else {
                 // 未启用背景时设置为完全透明
                 data.setBackground(Color.fromARGB(0));
-                if (plugin.getConfigManager().isDebugEnabled()) {
-                    plugin.getLogger().info("[DEBUG] 背景设置为透明");
-                }
+                debugLog.debug("背景设置为透明");
             }
             
             // 创建全息图
@@ -256,9 +258,8 @@ public class FancyHologramsProvider implements HologramProvider {
                 FancyHologramsPlugin.get().getHologramManager().addHologram(hologram);
                 
                 hologramIds.put(id, hologram.getData().getName());
-                if (plugin.getConfigManager().isDebugEnabled()) {
-                    plugin.getLogger().info("[DEBUG] [FancyHolograms] 已创建全息图: " + id + 
-                        ", 背景=" + backgroundEnabled + ", 可见距离=" + viewRange);
+                if (debugLog.isEnabled()) {
+                    debugLog.debug("已创建全息图: {}, 背景={}, 可见距离={}", id, backgroundEnabled, viewRange);
                 }
                 return true;
             }
@@ -18,12 +18,12 @@ public class HologramProviderFactory {
      */
     public static HologramProvider createProvider(IslandNpcPlugin plugin) {
         // 检查配置是否启用全息图
-        if (!plugin.getConfigManager().getConfig().getBoolean("npc.hologram.enabled", true)) {
+        if (!plugin.getConfigManager().isHologramEnabled()) {
             plugin.getLogger().info("全息图功能已在配置中禁用");
             return null;
         }
         
-        String configuredProvider = plugin.getConfigManager().getConfig().getString("npc.hologram.provider", "FANCYHOLOGRAMS");
+        String configuredProvider = plugin.getConfigManager().getSnapshot().getHologramProvider();
         boolean hasFancyHolograms = Bukkit.getPluginManager().getPlugin("FancyHolograms") != null;
         boolean hasDecentHolograms = Bukkit.getPluginManager().getPlugin("DecentHolograms") != null;
         
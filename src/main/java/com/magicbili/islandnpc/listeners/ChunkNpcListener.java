@@ -0,0 +1,124 @@
+package com.magicbili.islandnpc.listeners;
+
+import com.magicbili.islandnpc.IslandNpcPlugin;
+import com.magicbili.islandnpc.api.NpcProvider;
+import com.magicbili.islandnpc.storage.IslandNpcRecord;
+import com.magicbili.islandnpc.storage.NpcRecordStore;
+import com.magicbili.islandnpc.utils.DebugLogger;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 按区块懒加载NPC（performance.lazy-chunk-loading）
+ * 区块加载时才生成其中的NPC和全息图，区块卸载时释放，记录保留在存储中
+ * 
+ * @author magicbili
+ */
+public class ChunkNpcListener implements Listener {
+    
+    private final IslandNpcPlugin plugin;
+    private final DebugLogger debugLog;
+    private final Set<UUID> pending = new LinkedHashSet<>();
+    private boolean flushScheduled = false;
+    
+    public ChunkNpcListener(IslandNpcPlugin plugin) {
+        this.plugin = plugin;
+        this.debugLog = new DebugLogger(plugin, DebugLogger.Category.CHUNK, "");
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        Set<UUID> islands = plugin.getConfigManager().getNpcRecords()
+            .getIslandsInChunk(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+        if (islands.isEmpty()) {
+            return;
+        }
+        
+        // 不在区块加载事件中直接生成实体，合并到下一个 tick 处理
+        pending.addAll(islands);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Bukkit.getScheduler().runTask(plugin, this::materializePending);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        Set<UUID> islands = plugin.getConfigManager().getNpcRecords()
+            .getIslandsInChunk(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+        if (islands.isEmpty()) {
+            return;
+        }
+        
+        NpcProvider npcProvider = plugin.getNpcProvider();
+        if (npcProvider == null) {
+            return;
+        }
+        
+        int released = 0;
+        for (UUID islandUUID : new ArrayList<>(islands)) {
+            pending.remove(islandUUID);
+            if (npcProvider.unloadNpc(islandUUID)) {
+                released++;
+            }
+        }
+        // 参数较多，先判断是否启用，避免装箱和参数数组
+        if (released > 0 && debugLog.isEnabled()) {
+            debugLog.debug("区块卸载 {} [{}, {}]，释放了 {} 个 NPC", chunk.getWorld().getName(), chunk.getX(), chunk.getZ(), released);
+        }
+    }
+    
+    /**
+     * 生成等待中的岛屿NPC
+     */
+    private void materializePending() {
+        flushScheduled = false;
+        List<UUID> islands = new ArrayList<>(pending);
+        pending.clear();
+        
+        // 启动完成和NPC数据加载完成前由 loadAllExistingNpcs 处理已加载区块中的NPC
+        NpcProvider npcProvider = plugin.getNpcProvider();
+        if (npcProvider == null || !plugin.getStartupCoordinator().isReady()
+                || !plugin.getConfigManager().isNpcDataLoaded()) {
+            return;
+        }
+        
+        NpcRecordStore records = plugin.getConfigManager().getNpcRecords();
+        int created = 0;
+        for (UUID islandUUID : islands) {
+            IslandNpcRecord record = records.get(islandUUID);
+            if (record == null || !record.hasLocation() || npcProvider.hasNpc(islandUUID)) {
+                continue;
+            }
+            World world = Bukkit.getWorld(record.getWorldName());
+            if (world == null || !world.isChunkLoaded(record.getChunkX(), record.getChunkZ())) {
+                continue;
+            }
+            try {
+                if (npcProvider.recreateNpc(islandUUID)) {
+                    created++;
+                }
+            } catch (Exception e) {
+                plugin.getLogger().severe("加载岛屿 " + islandUUID + " 的 NPC 时发生错误: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        if (created > 0) {
+            debugLog.debug("区块加载，生成了 {} 个 NPC", created);
+        }
+    }
+}
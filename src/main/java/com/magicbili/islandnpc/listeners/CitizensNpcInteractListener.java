@@ -4,6 +4,7 @@ import com.bgsoftware.superiorskyblock.api.SuperiorSkyblockAPI;
 import com.bgsoftware.superiorskyblock.api.island.Island;
 import com.bgsoftware.superiorskyblock.api.wrappers.SuperiorPlayer;
 import com.magicbili.islandnpc.IslandNpcPlugin;
+import com.magicbili.islandnpc.npc.CitizensNpcProvider;
 import net.citizensnpcs.api.event.NPCRightClickEvent;
 import net.citizensnpcs.api.npc.NPC;
 import org.bukkit.entity.Player;
@@ -34,16 +35,27 @@ public class CitizensNpcInteractListener implements Listener {
         NPC npc = event.getNPC();
         Player player = event.getClicker();
         
-        // 检查是否是岛屿 NPC
-        String islandUUIDStr = npc.data().get("islandUUID");
+        // 优先按 NPC ID 直接查找本插件生成的 NPC
+        UUID islandUUID = null;
+        if (plugin.getNpcProvider() instanceof CitizensNpcProvider) {
+            islandUUID = ((CitizensNpcProvider) plugin.getNpcProvider()).getIslandUUIDByNpcId(npc.getId());
+        }
         
-        // 如果不是岛屿 NPC，直接返回，不处理
-        if (islandUUIDStr == null || islandUUIDStr.isEmpty()) {
-            return;
+        // 未命中时回退读取持久化数据（例如 Citizens 存档中保留的旧 NPC）
+        String islandUUIDStr = null;
+        if (islandUUID == null) {
+            islandUUIDStr = npc.data().get("islandUUID");
+            
+            // 如果不是岛屿 NPC，直接返回，不处理
+            if (islandUUIDStr == null || islandUUIDStr.isEmpty()) {
+                return;
+            }
         }
         
         try {
-            UUID islandUUID = UUID.fromString(islandUUIDStr);
+            if (islandUUID == null) {
+                islandUUID = UUID.fromString(islandUUIDStr);
+            }
             
             // 验证玩家岛屿
             SuperiorPlayer sPlayer = SuperiorSkyblockAPI.getPlayer(player);
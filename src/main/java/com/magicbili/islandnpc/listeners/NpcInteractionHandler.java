@@ -1,6 +1,7 @@
 package com.magicbili.islandnpc.listeners;
 
 import com.magicbili.islandnpc.IslandNpcPlugin;
+import com.magicbili.islandnpc.utils.DebugLogger;
 import org.bukkit.entity.Player;
 
 import java.util.UUID;
@@ -17,9 +18,11 @@ import java.util.UUID;
 public class NpcInteractionHandler {
     
     private final IslandNpcPlugin plugin;
+    private final DebugLogger debugLog;
     
     public NpcInteractionHandler(IslandNpcPlugin plugin) {
         this.plugin = plugin;
+        this.debugLog = new DebugLogger(plugin, DebugLogger.Category.INTERACT, "[交互] ");
     }
     
     /**
@@ -31,22 +34,22 @@ public class NpcInteractionHandler {
     public boolean handleInteraction(Player player, UUID islandUUID) {
         // 如果 islandUUID 为 null，说明这不是岛屿 NPC，直接返回
         if (islandUUID == null) {
-            debug("非岛屿 NPC，跳过处理");
+            debugLog.debug("非岛屿 NPC，跳过处理");
             return false;
         }
         
-        debug("玩家 " + player.getName() + " 与岛屿 NPC 交互 (岛屿: " + islandUUID + ")");
+        debugLog.debug("玩家 {} 与岛屿 NPC 交互 (岛屿: {})", player.getName(), islandUUID);
         
         // 检查是否有 TypeWriter 任务
         boolean hasQuest = checkTypeWriterQuest(player, islandUUID);
         
         if (hasQuest) {
             // 有任务 - 让 TypeWriter 处理交互
-            debug("触发 TypeWriter 交互");
+            debugLog.debug("触发 TypeWriter 交互");
             return false; // 不取消事件
         } else {
             // 没有任务 - 不处理，让其他插件处理
-            debug("没有 TypeWriter 任务，不处理交互");
+            debugLog.debug("没有 TypeWriter 任务，不处理交互");
             return false; // 不取消事件，让其他插件处理
         }
     }
@@ -56,53 +59,45 @@ public class NpcInteractionHandler {
      */
     private boolean checkTypeWriterQuest(Player player, UUID islandUUID) {
         try {
-            debug("检查 TypeWriter 任务 - 玩家: " + player.getName() + ", 岛屿: " + islandUUID);
+            debugLog.debug("检查 TypeWriter 任务 - 玩家: {}, 岛屿: {}", player.getName(), islandUUID);
             
             // 方法 1: 使用已注册的 TypeWriter 桥接服务（推荐）
             com.magicbili.islandnpc.api.TypeWriterBridge bridge = 
                 com.magicbili.islandnpc.api.TypeWriterServiceRegistry.getBridge();
             
             if (bridge != null) {
-                debug("TypeWriter 桥接服务已注册，检查活跃事件...");
+                debugLog.debug("TypeWriter 桥接服务已注册，检查活跃事件...");
                 if (bridge.hasActiveEvent(player, islandUUID)) {
-                    debug("检测到活跃的 TypeWriter 岛屿 NPC 事件");
+                    debugLog.debug("检测到活跃的 TypeWriter 岛屿 NPC 事件");
                     bridge.triggerEvents(player, islandUUID);
-                    debug("已触发 TypeWriter 事件");
+                    debugLog.debug("已触发 TypeWriter 事件");
                     return true;
                 } else {
-                    debug("没有找到匹配的 TypeWriter 事件");
+                    debugLog.debug("没有找到匹配的 TypeWriter 事件");
                 }
             } else {
-                debug("TypeWriter Extension 服务未注册");
+                debugLog.debug("TypeWriter Extension 服务未注册");
             }
             
             // 方法 2: 检查玩家是否有特定的元数据标记
             if (player.hasMetadata("typewriter_quest_active")) {
-                debug("玩家有活跃的 TypeWriter 任务标记");
+                debugLog.debug("玩家有活跃的 TypeWriter 任务标记");
                 return true;
             }
             
             // 方法 3: 检查玩家的权限或临时数据
             if (player.hasPermission("typewriter.quest.active")) {
-                debug("玩家有任务权限标记");
+                debugLog.debug("玩家有任务权限标记");
                 return true;
             }
             
-            debug("玩家没有活跃的任务");
+            debugLog.debug("玩家没有活跃的任务");
             return false;
             
         } catch (Exception e) {
-            debug("检查任务失败: " + e.getMessage());
+            debugLog.debug("检查任务失败: {}", e.getMessage());
             return false;
         }
     }
     
-    /**
-     * 输出debug日志
-     */
-    private void debug(String message) {
-        if (plugin.getConfigManager().isDebugEnabled()) {
-            plugin.getLogger().info("[DEBUG] [交互] " + message);
-        }
-    }
 }
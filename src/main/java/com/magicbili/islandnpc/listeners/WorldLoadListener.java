@@ -1,9 +1,12 @@
 package com.magicbili.islandnpc.listeners;
 
-import com.bgsoftware.superiorskyblock.api.SuperiorSkyblockAPI;
-import com.bgsoftware.superiorskyblock.api.island.Island;
 import com.infernalsuite.asp.api.events.LoadSlimeWorldEvent;
 import com.magicbili.islandnpc.IslandNpcPlugin;
+import com.magicbili.islandnpc.StartupCoordinator;
+import com.magicbili.islandnpc.api.IslandProvider;
+import com.magicbili.islandnpc.storage.IslandNpcRecord;
+import com.magicbili.islandnpc.storage.NpcRecordStore;
+import com.magicbili.islandnpc.utils.DebugLogger;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.event.EventHandler;
@@ -18,26 +21,21 @@ import java.util.UUID;
 
 /**
  * 监听世界加载和卸载事件
- * 加载时：使用 SuperiorSkyblock API 判断岛屿世界，使用 AdvancedSlimePaper API 判断 SlimeWorld
+ * 加载时：通过岛屿提供者判断岛屿世界，使用 AdvancedSlimePaper API 判断 SlimeWorld
  *        自动重新创建该世界中的NPC（支持 SlimeWorld 和普通岛屿世界）
- * 卸载时：清理NPC和全息图的引用
+ *        启动时NPC数据完整加载完成之前，世界出生点所在岛屿的NPC通过索引直接恢复，其余岛屿在加载完成后处理
+ * 卸载时：释放NPC和全息图对象，只保留持久化记录
+ * 启用 storage.world-pdc 时，加载时从世界读取保存在其中的NPC记录，卸载时从内存中移除
  */
 public class WorldLoadListener implements Listener {
     
     private final IslandNpcPlugin plugin;
+    private final DebugLogger debugLog;
     private final Set<String> processingWorlds = new HashSet<>();
     
     public WorldLoadListener(IslandNpcPlugin plugin) {
         this.plugin = plugin;
-    }
-    
-    /**
-     * 输出debug日志（仅在debug模式启用时）
-     */
-    private void debug(String message) {
-        if (plugin.getConfigManager().isDebugEnabled()) {
-            plugin.getLogger().info("[DEBUG] " + message);
-        }
+        this.debugLog = new DebugLogger(plugin, DebugLogger.Category.WORLD, "");
     }
     
     /**
@@ -50,17 +48,18 @@ public class WorldLoadListener implements Listener {
         World world = event.getWorld();
         String worldName = world.getName();
         
-        debug("[世界加载] 检测到世界加载: " + worldName);
+        debugLog.debug("[世界加载] 检测到世界加载: {}", worldName);
+        loadWorldNpcData(world);
         
         // 检查是否是岛屿世界
         if (!isIslandWorld(world)) {
-            debug("[世界加载] 非岛屿世界，跳过");
+            debugLog.debug("[世界加载] 非岛屿世界，跳过");
             return;
         }
         
         // 防止与 SlimeWorld 事件重复处理
         if (!tryAddProcessingWorld(worldName)) {
-            debug("[世界加载] 已由 SlimeWorld 事件处理，跳过");
+            debugLog.debug("[世界加载] 已由 SlimeWorld 事件处理，跳过");
             return;
         }
         
@@ -82,11 +81,12 @@ public class WorldLoadListener implements Listener {
         }
         
         String worldName = world.getName();
-        debug("[SlimeWorld加载] 检测到加载: " + worldName);
+        debugLog.debug("[SlimeWorld加载] 检测到加载: {}", worldName);
+        loadWorldNpcData(world);
         
         // 防止重复处理
         if (!tryAddProcessingWorld(worldName)) {
-            debug("[SlimeWorld加载] 世界已在处理中，跳过");
+            debugLog.debug("[SlimeWorld加载] 世界已在处理中，跳过");
             return;
         }
         
@@ -101,19 +101,42 @@ public class WorldLoadListener implements Listener {
     @EventHandler(priority = EventPriority.MONITOR)
     public void onWorldUnload(WorldUnloadEvent event) {
         World world = event.getWorld();
-        debug("[世界卸载] " + world.getName());
+        debugLog.debug("[世界卸载] {}", world.getName());
         cleanupNPCsInWorld(world);
+        // 保存在世界中的记录随世界一起卸载
+        plugin.getConfigManager().unloadWorldNpcData(world);
+    }
+    
+    /**
+     * 读取世界中保存的NPC记录（storage.world-pdc）
+     * NPC数据尚未加载完成时，由加载完成后统一读取所有已加载的世界
+     */
+    private void loadWorldNpcData(World world) {
+        if (plugin.getConfigManager().isNpcDataLoaded()) {
+            plugin.getConfigManager().loadWorldNpcData(world);
+        }
     }
     
     /**
      * 检查世界是否是岛屿世界
      */
     private boolean isIslandWorld(World world) {
+        return getIslandAtSpawn(world) != null;
+    }
+    
+    /**
+     * 获取世界出生点所在的岛屿
+     * @return 岛屿UUID，不在岛屿中或岛屿插件不可用时返回 null
+     */
+    private UUID getIslandAtSpawn(World world) {
+        IslandProvider islandProvider = plugin.getIslandProvider();
+        if (islandProvider == null) {
+            return null;
+        }
         try {
-            Island island = SuperiorSkyblockAPI.getIslandAt(world.getSpawnLocation());
-            return island != null;
+            return islandProvider.getIslandAt(world.getSpawnLocation());
         } catch (Exception e) {
-            return false;
+            return null;
         }
     }
     
@@ -134,17 +157,34 @@ public class WorldLoadListener implements Listener {
      * @param isSlimeWorld 是否为 SlimeWorld
      */
     private void scheduleNpcRespawn(String worldName, long delayTicks, boolean isSlimeWorld) {
-        debug("安排延迟任务: " + delayTicks + " ticks 后处理世界 " + worldName + 
-              " (SlimeWorld: " + isSlimeWorld + ")");
+        debugLog.debug("安排延迟任务: {} ticks 后处理世界 {} (SlimeWorld: {})", delayTicks, worldName, isSlimeWorld);
         
-        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+        // 启动时依赖插件可能尚未就绪，与区块监听一样等启动协调器就绪后再处理
+        // （就绪前加载的世界也会由 loadAllExistingNpcs 处理，重复恢复会被跳过）
+        StartupCoordinator coordinator = plugin.getStartupCoordinator();
+        if (coordinator == null) {
+            synchronized (processingWorlds) {
+                processingWorlds.remove(worldName);
+            }
+            return;
+        }
+        coordinator.onReady(() -> Bukkit.getScheduler().runTaskLater(plugin, () -> {
             try {
                 World world = Bukkit.getWorld(worldName);
-                if (world != null) {
-                    debug("延迟处理: 开始重新创建 NPC - " + worldName);
+                if (world == null) {
+                    plugin.getLogger().warning("延迟处理时找不到世界: " + worldName);
+                } else if (plugin.getConfigManager().isNpcDataLoaded()) {
+                    debugLog.debug("延迟处理: 开始重新创建 NPC - {}", worldName);
                     respawnNPCsInWorld(world, isSlimeWorld);
                 } else {
-                    plugin.getLogger().warning("延迟处理时找不到世界: " + worldName);
+                    // NPC数据仍在异步加载：先通过索引恢复出生点所在的岛屿，加载完成后再处理整个世界
+                    restoreIslandAtSpawn(world);
+                    plugin.getConfigManager().whenNpcDataLoaded(() -> {
+                        World loadedWorld = Bukkit.getWorld(worldName);
+                        if (loadedWorld != null) {
+                            respawnNPCsInWorld(loadedWorld, isSlimeWorld);
+                        }
+                    });
                 }
             } catch (Exception e) {
                 plugin.getLogger().severe("处理世界时发生错误: " + worldName + " - " + e.getMessage());
@@ -154,7 +194,32 @@ public class WorldLoadListener implements Listener {
                     processingWorlds.remove(worldName);
                 }
             }
-        }, delayTicks);
+        }, delayTicks));
+    }
+    
+    /**
+     * 通过索引恢复世界出生点所在岛屿的NPC（NPC数据完整加载完成之前）
+     * 每个 SlimeWorld 只有一个岛屿，世界加载时不需要等待全部记录解码
+     */
+    private void restoreIslandAtSpawn(World world) {
+        if (plugin.getNpcProvider() == null) {
+            return;
+        }
+        UUID islandUUID = getIslandAtSpawn(world);
+        if (islandUUID == null) {
+            return;
+        }
+        IslandNpcRecord record = plugin.getConfigManager().getNpcRecord(islandUUID);
+        if (record == null || !world.getName().equals(record.getWorldName())) {
+            return;
+        }
+        // 懒加载模式：区块未加载时由区块加载事件处理
+        if (plugin.getConfigManager().isLazyChunkLoading()
+                && !world.isChunkLoaded(record.getChunkX(), record.getChunkZ())) {
+            return;
+        }
+        boolean success = plugin.getNpcProvider().restoreNpc(record);
+        debugLog.debug("通过索引恢复 NPC {} 结果: {}", islandUUID, success);
     }
     
     /**
@@ -165,53 +230,49 @@ public class WorldLoadListener implements Listener {
     private void respawnNPCsInWorld(World world, boolean isSlimeWorld) {
         if (world == null) return;
         
-        debug("开始处理世界 " + world.getName() + " 的 NPC (SlimeWorld: " + isSlimeWorld + ")");
+        debugLog.debug("开始处理世界 {} 的 NPC (SlimeWorld: {})", world.getName(), isSlimeWorld);
         
         int count = processIslandsInWorld(world, isSlimeWorld, (islandUUID) -> {
             if (plugin.getNpcProvider() != null) {
-                debug("尝试重新创建 NPC: " + islandUUID);
+                // 懒加载模式：区块未加载时由区块加载事件处理
+                if (plugin.getConfigManager().isLazyChunkLoading()) {
+                    IslandNpcRecord record = plugin.getConfigManager().getNpcRecords().get(islandUUID);
+                    if (record != null && !world.isChunkLoaded(record.getChunkX(), record.getChunkZ())) {
+                        return;
+                    }
+                }
+                debugLog.debug("尝试重新创建 NPC: {}", islandUUID);
                 boolean success = plugin.getNpcProvider().recreateNpc(islandUUID);
-                debug("重新创建 NPC " + islandUUID + " 结果: " + success);
+                debugLog.debug("重新创建 NPC {} 结果: {}", islandUUID, success);
             }
         });
         
         if (count > 0) {
-            debug("重新创建了 " + count + " 个 NPC");
+            debugLog.debug("重新创建了 {} 个 NPC", count);
         } else {
-            debug("世界 " + world.getName() + " 中没有找到匹配的岛屿配置 (期望 SlimeWorld: " + isSlimeWorld + ")");
+            debugLog.debug("世界 {} 中没有找到匹配的岛屿配置 (期望 SlimeWorld: {})", world.getName(), isSlimeWorld);
         }
     }
     
     /**
-     * 清理指定世界中的 NPC 引用
+     * 释放指定世界中的 NPC 和全息图
+     * 不区分世界类型，处理该世界中的所有岛屿，世界重新加载时会从记录重建
      */
     private void cleanupNPCsInWorld(World world) {
-        if (world == null) return;
+        if (world == null || plugin.getNpcProvider() == null) return;
         
-        // 清理时不区分世界类型，处理所有岛屿
-        org.bukkit.configuration.ConfigurationSection section = 
-            plugin.getConfigManager().getNpcDataConfig().getConfigurationSection("npcs");
+        plugin.getReleaseStats().recordWorldUnload();
         
-        if (section == null) return;
-        
-        int count = 0;
-        for (String key : section.getKeys(false)) {
-            try {
-                UUID islandUUID = UUID.fromString(key);
-                String worldName = section.getString(key + ".location.world");
-                
-                if (worldName != null && worldName.equals(world.getName())) {
-                    // NPC提供者会在世界重新加载时自动重建NPC
-                    // 这里不需要特殊处理
-                    count++;
-                }
-            } catch (IllegalArgumentException e) {
-                plugin.getLogger().warning("无效的岛屿 UUID: " + key);
+        int released = 0;
+        for (UUID islandUUID : new java.util.ArrayList<>(
+                plugin.getConfigManager().getNpcRecords().getIslandsInWorld(world.getName()))) {
+            if (plugin.getNpcProvider().unloadNpc(islandUUID)) {
+                released++;
             }
         }
         
-        if (count > 0) {
-            debug("处理了 " + count + " 个岛屿的 NPC");
+        if (released > 0) {
+            debugLog.debug("世界 {} 卸载，释放了 {} 个 NPC", world.getName(), released);
         }
     }
     
@@ -223,50 +284,46 @@ public class WorldLoadListener implements Listener {
      * @return 处理的岛屿数量
      */
     private int processIslandsInWorld(World world, boolean filterSlimeWorld, java.util.function.Consumer<UUID> action) {
-        org.bukkit.configuration.ConfigurationSection section = 
-            plugin.getConfigManager().getNpcDataConfig().getConfigurationSection("npcs");
-        
-        if (section == null) return 0;
+        // 通过世界索引只取该世界中的岛屿（先复制，action 可能会修改记录）
+        NpcRecordStore records = plugin.getConfigManager().getNpcRecords();
+        java.util.List<IslandNpcRecord> matched = new java.util.ArrayList<>();
+        for (UUID islandUUID : records.getIslandsInWorld(world.getName())) {
+            matched.add(records.get(islandUUID));
+        }
         
         int count = 0;
         int skipped = 0;
-        for (String key : section.getKeys(false)) {
+        for (IslandNpcRecord record : matched) {
+            UUID islandUUID = record.getIslandUUID();
             try {
-                UUID islandUUID = UUID.fromString(key);
-                String worldName = section.getString(key + ".location.world");
+                // 性能优化：使用 is_slimeworld 标记过滤
+                // 注意：如果记录中没有 is_slimeworld 标记（旧数据），需要动态检测
+                boolean isSlimeWorld;
+                if (record.getSlimeWorld() != null) {
+                    isSlimeWorld = record.getSlimeWorld();
+                } else {
+                    // 旧数据没有标记，动态检测世界类型
+                    isSlimeWorld = com.magicbili.islandnpc.utils.WorldUtils.isSlimeWorld(world);
+                    debugLog.debug("岛屿 {} 缺少 is_slimeworld 标记，动态检测结果: {}", islandUUID, isSlimeWorld);
+                }
                 
-                if (worldName != null && worldName.equals(world.getName())) {
-                    // 性能优化：使用 is_slimeworld 标记过滤
-                    // 注意：如果配置中没有 is_slimeworld 字段（旧数据），需要动态检测
-                    boolean isSlimeWorld;
-                    if (section.contains(key + ".is_slimeworld")) {
-                        isSlimeWorld = section.getBoolean(key + ".is_slimeworld");
-                    } else {
-                        // 旧数据没有标记，动态检测世界类型
-                        isSlimeWorld = com.magicbili.islandnpc.utils.WorldUtils.isSlimeWorld(world);
-                        debug("岛屿 " + key + " 缺少 is_slimeworld 标记，动态检测结果: " + isSlimeWorld);
-                    }
-                    
-                    // 只处理匹配的世界类型
-                    if (isSlimeWorld == filterSlimeWorld) {
-                        debug("处理岛屿: " + islandUUID + " (SlimeWorld: " + isSlimeWorld + ")");
-                        action.accept(islandUUID);
-                        count++;
-                    } else {
-                        skipped++;
-                        debug("跳过岛屿: " + islandUUID + " (期望 SlimeWorld: " + filterSlimeWorld + ", 实际: " + isSlimeWorld + ")");
-                    }
+                // 只处理匹配的世界类型
+                if (isSlimeWorld == filterSlimeWorld) {
+                    debugLog.debug("处理岛屿: {} (SlimeWorld: {})", islandUUID, isSlimeWorld);
+                    action.accept(islandUUID);
+                    count++;
+                } else {
+                    skipped++;
+                    debugLog.debug("跳过岛屿: {} (期望 SlimeWorld: {}, 实际: {})", islandUUID, filterSlimeWorld, isSlimeWorld);
                 }
-            } catch (IllegalArgumentException e) {
-                plugin.getLogger().warning("无效的岛屿 UUID: " + key);
             } catch (Exception e) {
-                plugin.getLogger().severe("处理岛屿 " + key + " 时出错: " + e.getMessage());
+                plugin.getLogger().severe("处理岛屿 " + islandUUID + " 时出错: " + e.getMessage());
                 e.printStackTrace();
             }
         }
         
         if (skipped > 0) {
-            debug("跳过了 " + skipped + " 个不匹配的岛屿类型");
+            debugLog.debug("跳过了 {} 个不匹配的岛屿类型", skipped);
         }
         
         return count;
@@ -2,16 +2,18 @@ package com.magicbili.islandnpc.npc;
 
 import com.magicbili.islandnpc.IslandNpcPlugin;
 import com.magicbili.islandnpc.api.AbstractNpcProvider;
+import com.magicbili.islandnpc.storage.IslandNpcRecord;
 import net.citizensnpcs.api.CitizensAPI;
+import net.citizensnpcs.api.event.CitizensEnableEvent;
 import net.citizensnpcs.api.npc.NPC;
 import net.citizensnpcs.api.npc.NPCRegistry;
 import org.bukkit.Location;
-import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.EntityType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -23,17 +25,28 @@ import java.util.UUID;
 public class CitizensNpcProvider extends AbstractNpcProvider {
     
     private final NPCRegistry npcRegistry;
-    private final Map<UUID, Integer> islandNpcs;
-    private final Set<UUID> pendingSaves = new HashSet<>();
-    private org.bukkit.scheduler.BukkitTask saveTask = null;
+    // 岛屿句柄 -> Citizens NPC ID，-1 表示没有NPC
+    private int[] islandNpcs = new int[0];
+    private int boundCount = 0;
+    private final NpcIdIndex npcIslands = new NpcIdIndex(); // NPC ID -> 岛屿UUID（交互时查找）
+    private volatile boolean registryLoaded = false;
+    private final Listener readyListener = new Listener() {
+        /**
+         * Citizens 在第一个 tick 读取完 NPC 存档后触发
+         */
+        @EventHandler
+        public void onCitizensEnable(CitizensEnableEvent event) {
+            registryLoaded = true;
+            debugLog.debug("Citizens NPC 注册表已加载");
+        }
+    };
     
     public CitizensNpcProvider(IslandNpcPlugin plugin) {
         super(plugin);
         this.npcRegistry = CitizensAPI.getNPCRegistry();
-        this.islandNpcs = new HashMap<>();
         
-        // 延迟加载NPC数据
-        org.bukkit.Bukkit.getScheduler().runTaskLater(plugin, this::loadNpcData, 100L);
+        // NPC数据在异步线程中读取，加载完成后再同步到提供者
+        plugin.getConfigManager().whenNpcDataLoaded(this::loadNpcData);
     }
     
     @Override
@@ -41,28 +54,52 @@ public class CitizensNpcProvider extends AbstractNpcProvider {
         return "Citizens";
     }
     
+    @Override
+    public Listener getEventListener() {
+        return readyListener;
+    }
+    
+    @Override
+    public boolean isReady() {
+        return registryLoaded;
+    }
+    
     @Override
     public boolean createNpc(UUID islandUUID, Location location) {
         if (location == null) {
-            debug("创建NPC失败: 位置为null");
+            debugLog.debug("创建NPC失败: 位置为null");
             return false;
         }
         
-        if (islandNpcs.containsKey(islandUUID)) {
-            NPC existingNpc = npcRegistry.getById(islandNpcs.get(islandUUID));
-            if (existingNpc != null) {
-                debug("NPC已存在: " + islandUUID);
-                return true;
-            }
+        if (isNpcMaterialized(islandUUID)) {
+            debugLog.debug("NPC已存在: {}", islandUUID);
+            return true;
         }
-
-        EntityType entityType;
-        try {
-            entityType = EntityType.valueOf(plugin.getConfigManager().getNpcEntityType());
-        } catch (IllegalArgumentException e) {
-            plugin.getLogger().warning("无效的实体类型，使用默认值 VILLAGER");
-            entityType = EntityType.VILLAGER;
+        
+        if (!spawnNpc(islandUUID, location, null)) {
+            return false;
         }
+        setHiddenState(islandUUID, false);
+        saveSingleNpcData(islandUUID);
+
+        plugin.getEventLog().record("创建 Citizens NPC", islandUUID);
+        debugLog.debug("创建 Citizens NPC #{} 用于岛屿: {}", npcIdOf(islandUUID), islandUUID);
+        
+        // 调用创建后钩子
+        afterNpcCreated(islandUUID, location);
+        
+        return true;
+    }
+    
+    @Override
+    protected boolean isNpcMaterialized(UUID islandUUID) {
+        return getNpc(islandUUID) != null;
+    }
+    
+    @Override
+    protected boolean spawnNpc(UUID islandUUID, Location location, IslandNpcRecord record) {
+        // 实体类型在加载配置时已解析
+        EntityType entityType = plugin.getConfigManager().getSnapshot().getNpcEntityType();
 
         NPC npc = npcRegistry.createNPC(entityType, "");
         
@@ -75,47 +112,40 @@ public class CitizensNpcProvider extends AbstractNpcProvider {
 
         npc.spawn(location);
         
-        // 设置持久化数据
+        // 设置持久化数据（恢复时沿用记录中的对话框）
+        String dialogId = record != null && record.getDialogId() != null
+            ? record.getDialogId() : plugin.getConfigManager().getDialogId();
         npc.data().setPersistent("islandUUID", islandUUID.toString());
-        npc.data().setPersistent("dialogId", plugin.getConfigManager().getDialogId());
+        npc.data().setPersistent("dialogId", dialogId);
 
         // 保存映射关系
-        islandNpcs.put(islandUUID, npc.getId());
-        hiddenNpcs.put(islandUUID, false);
-        saveSingleNpcData(islandUUID);
-
-        plugin.getLogger().info("创建 Citizens NPC #" + npc.getId() + " 用于岛屿: " + islandUUID);
-        
-        // 调用创建后钩子
-        afterNpcCreated(islandUUID, location);
-        
+        bindNpc(islandUUID, npc.getId());
         return true;
     }
     
     @Override
     public boolean deleteNpc(UUID islandUUID) {
-        if (!islandNpcs.containsKey(islandUUID)) {
-            debug("删除NPC失败: 岛屿没有NPC - " + islandUUID);
-            return false;
+        int npcId = npcIdOf(islandUUID);
+        if (npcId < 0) {
+            return deleteRecord(islandUUID);
         }
         
         // 调用删除前钩子
         beforeNpcDeleted(islandUUID);
         
-        NPC npc = npcRegistry.getById(islandNpcs.get(islandUUID));
+        NPC npc = npcRegistry.getById(npcId);
         if (npc != null) {
             npc.destroy();
-            debug("已销毁 NPC #" + npc.getId());
+            debugLog.debug("已销毁 NPC #{}", npc.getId());
         }
         
-        islandNpcs.remove(islandUUID);
-        hiddenNpcs.remove(islandUUID);
+        unbindNpc(islandUUID);
+        releaseIsland(islandUUID);
         
-        // 从配置中删除
-        plugin.getConfigManager().getNpcDataConfig().set("npcs." + islandUUID.toString(), null);
-        plugin.getConfigManager().saveNpcData();
+        // 从记录中删除
+        plugin.getConfigManager().removeNpcRecord(islandUUID);
         
-        plugin.getLogger().info("删除岛屿NPC: " + islandUUID);
+        plugin.getEventLog().record("删除岛屿NPC", islandUUID);
         return true;
     }
     
@@ -123,15 +153,14 @@ public class CitizensNpcProvider extends AbstractNpcProvider {
     public boolean hideNpc(UUID islandUUID) {
         NPC npc = getNpc(islandUUID);
         if (npc == null) {
-            debug("隐藏NPC失败: NPC不存在 - " + islandUUID);
-            return false;
+            return hideRecord(islandUUID);
         }
         
         npc.despawn();
-        hiddenNpcs.put(islandUUID, true);
+        setHiddenState(islandUUID, true);
         saveSingleNpcData(islandUUID);
         
-        debug("已隐藏 NPC: " + islandUUID);
+        debugLog.debug("已隐藏 NPC: {}", islandUUID);
         return true;
     }
     
@@ -139,19 +168,19 @@ public class CitizensNpcProvider extends AbstractNpcProvider {
     public boolean showNpc(UUID islandUUID) {
         NPC npc = getNpc(islandUUID);
         if (npc == null) {
-            debug("显示NPC失败: NPC不存在 - " + islandUUID);
-            return false;
+            return showFromRecord(islandUUID);
         }
         
         if (npc.isSpawned()) {
-            debug("NPC已经生成，无需重复生成");
+            debugLog.debug("NPC已经生成，无需重复生成");
             return true;
         }
         
-        hiddenNpcs.put(islandUUID, false);
+        npc.spawn(npc.getStoredLocation());
+        setHiddenState(islandUUID, false);
         saveSingleNpcData(islandUUID);
         
-        debug("已显示 NPC: " + islandUUID);
+        debugLog.debug("已显示 NPC: {}", islandUUID);
         return true;
     }
     
@@ -159,8 +188,7 @@ public class CitizensNpcProvider extends AbstractNpcProvider {
     public boolean moveNpc(UUID islandUUID, Location newLocation) {
         NPC npc = getNpc(islandUUID);
         if (npc == null) {
-            debug("移动NPC失败: NPC不存在 - " + islandUUID);
-            return false;
+            return moveRecord(islandUUID, newLocation);
         }
         
         boolean wasSpawned = npc.isSpawned();
@@ -179,232 +207,175 @@ public class CitizensNpcProvider extends AbstractNpcProvider {
         }
         
         saveSingleNpcData(islandUUID);
-        debug("已移动 NPC: " + islandUUID);
+        debugLog.debug("已移动 NPC: {}", islandUUID);
         return true;
     }
     
-    @Override
-    public boolean hasNpc(UUID islandUUID) {
-        return islandNpcs.containsKey(islandUUID) && getNpc(islandUUID) != null;
-    }
-    
     @Override
     public Set<UUID> getAllIslandUUIDs() {
-        return islandNpcs.keySet();
+        Set<UUID> islands = new HashSet<>(boundCount * 2);
+        for (int handle = 0; handle < islandNpcs.length; handle++) {
+            if (islandNpcs[handle] >= 0) {
+                islands.add(islandHandles.uuidOf(handle));
+            }
+        }
+        return islands;
     }
     
     @Override
-    public boolean recreateNpc(UUID islandUUID) {
-        // 检查是否已经有NPC
-        if (islandNpcs.containsKey(islandUUID)) {
-            NPC existingNpc = npcRegistry.getById(islandNpcs.get(islandUUID));
-            if (existingNpc != null && existingNpc.isSpawned()) {
-                debug("NPC已存在且已生成，跳过重新创建: " + islandUUID);
-                return true;
-            }
-        }
-        
-        // 从配置读取保存的数据
-        ConfigurationSection section = plugin.getConfigManager().getNpcDataConfig()
-            .getConfigurationSection("npcs." + islandUUID.toString());
-        if (section == null) {
-            debug("未找到岛屿的NPC配置数据: " + islandUUID);
+    public boolean unloadNpc(UUID islandUUID) {
+        Integer npcId = unbindNpc(islandUUID);
+        if (npcId == null) {
             return false;
         }
         
-        // 读取位置
-        String worldName = section.getString("location.world");
-        double x = section.getDouble("location.x");
-        double y = section.getDouble("location.y");
-        double z = section.getDouble("location.z");
-        float yaw = plugin.getConfigManager().getNpcYaw();
-        float pitch = plugin.getConfigManager().getNpcPitch();
-        
-        org.bukkit.World world = org.bukkit.Bukkit.getWorld(worldName);
-        if (world == null) {
-            debug("世界不存在: " + worldName);
-            return false;
-        }
+        beforeNpcUnloaded(islandUUID);
         
-        Location location = new Location(world, x, y, z, yaw, pitch);
-        boolean hidden = section.getBoolean("hidden", false);
-        
-        // 创建NPC
-        boolean success = createNpc(islandUUID, location);
-        if (success && hidden) {
-            hideNpc(islandUUID);
+        NPC npc = npcRegistry.getById(npcId);
+        if (npc != null) {
+            npc.destroy();
         }
         
-        debug("重新创建NPC: " + islandUUID + ", 成功=" + success);
-        return success;
+        debugLog.debug("已释放 NPC: {}", islandUUID);
+        return true;
     }
     
     @Override
     public void reloadAllNpcs() {
-        debug("重新加载所有NPC...");
-        for (UUID islandUUID : islandNpcs.keySet()) {
-            NPC npc = getNpc(islandUUID);
-            if (npc != null && npc.isSpawned()) {
+        debugLog.debug("重新加载所有NPC...");
+        EntityType entityType = plugin.getConfigManager().getSnapshot().getNpcEntityType();
+        String skin = plugin.getConfigManager().getNpcSkin();
+        for (int npcId : islandNpcs) {
+            NPC npc = npcId >= 0 ? npcRegistry.getById(npcId) : null;
+            if (npc == null) {
+                continue;
+            }
+            // 应用当前配置的实体类型和皮肤
+            if (npc.getEntityType() != entityType) {
+                npc.setBukkitEntityType(entityType);
+            }
+            if (entityType == EntityType.PLAYER && !skin.isEmpty()) {
+                npc.getOrAddTrait(net.citizensnpcs.trait.SkinTrait.class).setSkinName(skin);
+            }
+            if (npc.isSpawned()) {
                 Location loc = npc.getStoredLocation();
                 npc.despawn();
                 npc.spawn(loc);
             }
         }
-        debug("完成重新加载");
+        debugLog.debug("完成重新加载");
     }
     
     /**
      * 保存单个 NPC 数据（性能优化：只保存一个 NPC）
      */
     private void saveSingleNpcData(UUID islandUUID) {
-        if (!islandNpcs.containsKey(islandUUID)) {
-            return;
-        }
-        
-        int npcId = islandNpcs.get(islandUUID);
-        boolean hidden = hiddenNpcs.getOrDefault(islandUUID, false);
-        
-        NPC npc = npcRegistry.getById(npcId);
+        NPC npc = getNpc(islandUUID);
         if (npc == null) {
             return;
         }
-
-        String path = "npcs." + islandUUID.toString();
-        
-        // 保存位置信息
-        Location loc = npc.getStoredLocation();
-        if (loc != null) {
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.world", 
-                loc.getWorld() != null ? loc.getWorld().getName() : "unknown");
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.x", loc.getX());
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.y", loc.getY());
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.z", loc.getZ());
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.yaw", loc.getYaw());
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.pitch", loc.getPitch());
-            
-            // 保存是否为 SlimeWorld
-            boolean isSlimeWorld = loc.getWorld() != null && 
-                com.magicbili.islandnpc.utils.WorldUtils.isSlimeWorld(loc.getWorld());
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".is_slimeworld", isSlimeWorld);
-        }
-        
-        // 保存隐藏状态
-        plugin.getConfigManager().getNpcDataConfig().set(path + ".hidden", hidden);
-        
-        // 保存对话框ID
-        String dialogId = npc.data().get("dialogId");
-        if (dialogId != null) {
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".dialog-id", dialogId);
-        }
         
-        // 异步保存到磁盘（防抖：合并多次保存请求）
-        scheduleSave();
-    }
-    
-    /**
-     * 安排延迟保存任务（防抖机制）
-     * 多次调用会合并为一次保存，避免频繁 I/O
-     */
-    private void scheduleSave() {
-        if (saveTask != null && !saveTask.isCancelled()) {
-            // 已有保存任务，取消并重新安排
-            saveTask.cancel();
-        }
-        
-        // 延迟 20 ticks (1秒) 后保存，期间的多次保存会被合并
-        saveTask = org.bukkit.Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> {
-            plugin.getConfigManager().saveNpcData();
-            debug("[防抖保存] 已保存 NPC 数据到磁盘");
-        }, 20L);
+        // 标记为待保存，由刷盘线程批量写入磁盘
+        plugin.getConfigManager().putNpcRecord(
+            buildRecord(islandUUID, npc.getStoredLocation(), null, npc.data().get("dialogId")));
     }
     
     @Override
     public void saveAllNpcData() {
-        for (Map.Entry<UUID, Integer> entry : islandNpcs.entrySet()) {
-            UUID islandUUID = entry.getKey();
-            int npcId = entry.getValue();
-            boolean hidden = hiddenNpcs.getOrDefault(islandUUID, false);
-            
-            NPC npc = npcRegistry.getById(npcId);
+        for (int handle = 0; handle < islandNpcs.length; handle++) {
+            NPC npc = islandNpcs[handle] >= 0 ? npcRegistry.getById(islandNpcs[handle]) : null;
             if (npc == null) {
                 continue;
             }
-
-            String path = "npcs." + islandUUID.toString();
-            
-            // 保存位置信息
-            Location loc = npc.getStoredLocation();
-            if (loc != null) {
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.world", 
-                    loc.getWorld() != null ? loc.getWorld().getName() : "unknown");
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.x", loc.getX());
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.y", loc.getY());
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.z", loc.getZ());
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.yaw", loc.getYaw());
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.pitch", loc.getPitch());
-                
-                // 保存是否为 SlimeWorld
-                boolean isSlimeWorld = loc.getWorld() != null && 
-                    com.magicbili.islandnpc.utils.WorldUtils.isSlimeWorld(loc.getWorld());
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".is_slimeworld", isSlimeWorld);
-            }
-            
-            // 保存隐藏状态
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".hidden", hidden);
-            
-            // 保存对话框ID
-            String dialogId = npc.data().get("dialogId");
-            if (dialogId != null) {
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".dialog-id", dialogId);
-            }
+            // 只有内容变化的记录会被标记待保存，关闭时由刷盘线程按岛屿写入
+            plugin.getConfigManager().putNpcRecord(
+                buildRecord(islandHandles.uuidOf(handle), npc.getStoredLocation(), null, npc.data().get("dialogId")));
         }
-        plugin.getConfigManager().saveNpcData();
     }
     
     @Override
     public void cleanup() {
-        debug("清理 Citizens NPC 提供者...");
+        debugLog.debug("清理 Citizens NPC 提供者...");
         saveAllNpcData();
-        debug("清理完成");
+        debugLog.debug("清理完成");
     }
     
     /**
-     * 获取岛屿的NPC
+     * 根据 Citizens NPC ID 查找岛屿 UUID
+     * @param npcId NPC ID
+     * @return 岛屿 UUID，如果不是本插件管理的 NPC 则返回 null
      */
-    private NPC getNpc(UUID islandUUID) {
-        if (!islandNpcs.containsKey(islandUUID)) {
+    public UUID getIslandUUIDByNpcId(int npcId) {
+        return npcIslands.get(npcId);
+    }
+    
+    /**
+     * 记录岛屿与 NPC ID 的双向映射
+     */
+    private void bindNpc(UUID islandUUID, int npcId) {
+        int handle = islandHandles.intern(islandUUID);
+        if (handle >= islandNpcs.length) {
+            int oldLength = islandNpcs.length;
+            islandNpcs = Arrays.copyOf(islandNpcs, Math.max(64, islandHandles.capacity() * 2));
+            Arrays.fill(islandNpcs, oldLength, islandNpcs.length, -1);
+        }
+        int previous = islandNpcs[handle];
+        if (previous < 0) {
+            boundCount++;
+        } else if (previous != npcId) {
+            npcIslands.remove(previous);
+        }
+        islandNpcs[handle] = npcId;
+        npcIslands.put(npcId, islandUUID);
+    }
+    
+    /**
+     * 移除岛屿与 NPC ID 的双向映射
+     * @return 被移除的 NPC ID，如果没有映射返回 null
+     */
+    private Integer unbindNpc(UUID islandUUID) {
+        int handle = islandHandles.find(islandUUID);
+        if (handle < 0 || handle >= islandNpcs.length || islandNpcs[handle] < 0) {
             return null;
         }
-        return npcRegistry.getById(islandNpcs.get(islandUUID));
+        int npcId = islandNpcs[handle];
+        islandNpcs[handle] = -1;
+        boundCount--;
+        npcIslands.remove(npcId);
+        return npcId;
+    }
+    
+    /**
+     * 获取岛屿的 NPC ID
+     * @return NPC ID，没有NPC时返回 -1
+     */
+    private int npcIdOf(UUID islandUUID) {
+        int handle = islandHandles.find(islandUUID);
+        return handle >= 0 && handle < islandNpcs.length ? islandNpcs[handle] : -1;
+    }
+    
+    /**
+     * 获取岛屿的NPC
+     */
+    private NPC getNpc(UUID islandUUID) {
+        int npcId = npcIdOf(islandUUID);
+        return npcId >= 0 ? npcRegistry.getById(npcId) : null;
     }
     
     /**
      * 加载NPC数据
      */
     private void loadNpcData() {
-        debug("开始加载NPC数据...");
-        ConfigurationSection section = plugin.getConfigManager().getNpcDataConfig()
-            .getConfigurationSection("npcs");
-        if (section == null) {
-            debug("没有找到NPC数据配置节点");
-            return;
-        }
-
+        debugLog.debug("开始加载NPC数据...");
         int loaded = 0;
-        for (String key : section.getKeys(false)) {
-            try {
-                UUID islandUUID = UUID.fromString(key);
-                boolean hidden = section.getBoolean(key + ".hidden", false);
-                hiddenNpcs.put(islandUUID, hidden);
-                loaded++;
-            } catch (IllegalArgumentException e) {
-                plugin.getLogger().warning("无效的岛屿UUID: " + key);
-            }
+        for (IslandNpcRecord record : plugin.getConfigManager().getNpcRecords().getAll()) {
+            setHiddenState(record.getIslandUUID(), record.isHidden());
+            loaded++;
         }
         
         if (loaded > 0) {
             plugin.getLogger().info("加载了 " + loaded + " 个岛屿的NPC配置");
         }
-        debug("NPC数据加载完成");
+        debugLog.debug("NPC数据加载完成");
     }
 }
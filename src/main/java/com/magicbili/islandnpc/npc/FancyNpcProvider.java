@@ -2,13 +2,14 @@ package com.magicbili.islandnpc.npc;
 
 import com.magicbili.islandnpc.IslandNpcPlugin;
 import com.magicbili.islandnpc.api.AbstractNpcProvider;
+import com.magicbili.islandnpc.storage.IslandNpcRecord;
 import de.oliver.fancynpcs.api.FancyNpcsPlugin;
 import de.oliver.fancynpcs.api.Npc;
 import de.oliver.fancynpcs.api.NpcData;
 import org.bukkit.Location;
-import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.EntityType;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -22,16 +23,16 @@ import java.util.UUID;
  */
 public class FancyNpcProvider extends AbstractNpcProvider {
     
-    private final Map<UUID, String> islandNpcs;
-    private final Set<UUID> pendingSaves = new HashSet<>();
-    private org.bukkit.scheduler.BukkitTask saveTask = null;
+    // 岛屿句柄 -> FancyNpcs NPC ID，null 表示没有NPC
+    private String[] islandNpcs = new String[0];
+    private int boundCount = 0;
+    private final Map<String, UUID> npcIslands = new HashMap<>(); // NPC ID -> 岛屿UUID（反向索引）
     
     public FancyNpcProvider(IslandNpcPlugin plugin) {
         super(plugin);
-        this.islandNpcs = new HashMap<>();
         
-        // 延迟加载NPC数据
-        org.bukkit.Bukkit.getScheduler().runTaskLater(plugin, this::loadNpcData, 100L);
+        // NPC数据在异步线程中读取，加载完成后再同步到提供者
+        plugin.getConfigManager().whenNpcDataLoaded(this::loadNpcData);
     }
     
     @Override
@@ -39,28 +40,47 @@ public class FancyNpcProvider extends AbstractNpcProvider {
         return "FancyNpcs";
     }
     
+    @Override
+    public boolean isReady() {
+        return FancyNpcsPlugin.get().getNpcManager().isLoaded();
+    }
+    
     @Override
     public boolean createNpc(UUID islandUUID, Location location) {
         if (location == null) {
-            debug("创建NPC失败: 位置为null");
+            debugLog.debug("创建NPC失败: 位置为null");
             return false;
         }
         
-        if (islandNpcs.containsKey(islandUUID)) {
-            Npc existingNpc = FancyNpcsPlugin.get().getNpcManager().getNpcById(islandNpcs.get(islandUUID));
-            if (existingNpc != null) {
-                debug("NPC已存在: " + islandUUID);
-                return true;
-            }
+        if (isNpcMaterialized(islandUUID)) {
+            debugLog.debug("NPC已存在: {}", islandUUID);
+            return true;
         }
-
-        EntityType entityType;
-        try {
-            entityType = EntityType.valueOf(plugin.getConfigManager().getNpcEntityType());
-        } catch (IllegalArgumentException e) {
-            plugin.getLogger().warning("无效的实体类型，使用默认值 VILLAGER");
-            entityType = EntityType.VILLAGER;
+        
+        if (!spawnNpc(islandUUID, location, null)) {
+            return false;
         }
+        setHiddenState(islandUUID, false);
+        saveSingleNpcData(islandUUID);
+
+        plugin.getEventLog().record("创建 FancyNPC", islandUUID);
+        debugLog.debug("创建 FancyNPC {} 用于岛屿: {}", npcIdOf(islandUUID), islandUUID);
+        
+        // 调用创建后钩子
+        afterNpcCreated(islandUUID, location);
+        
+        return true;
+    }
+    
+    @Override
+    protected boolean isNpcMaterialized(UUID islandUUID) {
+        return getNpc(islandUUID) != null;
+    }
+    
+    @Override
+    protected boolean spawnNpc(UUID islandUUID, Location location, IslandNpcRecord record) {
+        // 实体类型在加载配置时已解析
+        EntityType entityType = plugin.getConfigManager().getSnapshot().getNpcEntityType();
 
         // 创建NPC
         String npcName = "island_npc_" + islandUUID.toString().substring(0, 8);
@@ -81,24 +101,15 @@ public class FancyNpcProvider extends AbstractNpcProvider {
         FancyNpcsPlugin.get().getNpcManager().registerNpc(npc);
         npc.spawnForAll();
 
-        // 保存映射关系
-        islandNpcs.put(islandUUID, npc.getData().getId());
-        hiddenNpcs.put(islandUUID, false);
-        saveSingleNpcData(islandUUID);
-
-        plugin.getLogger().info("创建 FancyNPC " + npc.getData().getId() + " 用于岛屿: " + islandUUID);
-        
-        // 调用创建后钩子
-        afterNpcCreated(islandUUID, location);
-        
+        // 保存映射关系（NPC不保存到 FancyNpcs 文件，每次生成都是新的ID，记录中的ID不需要更新）
+        bindNpc(islandUUID, npc.getData().getId());
         return true;
     }
     
     @Override
     public boolean deleteNpc(UUID islandUUID) {
-        if (!islandNpcs.containsKey(islandUUID)) {
-            debug("删除NPC失败: 岛屿没有NPC - " + islandUUID);
-            return false;
+        if (npcIdOf(islandUUID) == null) {
+            return deleteRecord(islandUUID);
         }
         
         // 调用删除前钩子
@@ -108,17 +119,16 @@ public class FancyNpcProvider extends AbstractNpcProvider {
         if (npc != null) {
             npc.removeForAll();
             FancyNpcsPlugin.get().getNpcManager().removeNpc(npc);
-            debug("已销毁 NPC " + npc.getData().getId());
+            debugLog.debug("已销毁 NPC {}", npc.getData().getId());
         }
         
-        islandNpcs.remove(islandUUID);
-        hiddenNpcs.remove(islandUUID);
+        unbindNpc(islandUUID);
+        releaseIsland(islandUUID);
         
-        // 从配置中删除
-        plugin.getConfigManager().getNpcDataConfig().set("npcs." + islandUUID.toString(), null);
-        plugin.getConfigManager().saveNpcData();
+        // 从记录中删除
+        plugin.getConfigManager().removeNpcRecord(islandUUID);
         
-        plugin.getLogger().info("删除岛屿NPC: " + islandUUID);
+        plugin.getEventLog().record("删除岛屿NPC", islandUUID);
         return true;
     }
     
@@ -126,15 +136,14 @@ public class FancyNpcProvider extends AbstractNpcProvider {
     public boolean hideNpc(UUID islandUUID) {
         Npc npc = getNpc(islandUUID);
         if (npc == null) {
-            debug("隐藏NPC失败: NPC不存在 - " + islandUUID);
-            return false;
+            return hideRecord(islandUUID);
         }
         
         npc.removeForAll();
-        hiddenNpcs.put(islandUUID, true);
+        setHiddenState(islandUUID, true);
         saveSingleNpcData(islandUUID);
         
-        debug("已隐藏 NPC: " + islandUUID);
+        debugLog.debug("已隐藏 NPC: {}", islandUUID);
         return true;
     }
     
@@ -142,15 +151,14 @@ public class FancyNpcProvider extends AbstractNpcProvider {
     public boolean showNpc(UUID islandUUID) {
         Npc npc = getNpc(islandUUID);
         if (npc == null) {
-            debug("显示NPC失败: NPC不存在 - " + islandUUID);
-            return false;
+            return showFromRecord(islandUUID);
         }
         
         npc.spawnForAll();
-        hiddenNpcs.put(islandUUID, false);
+        setHiddenState(islandUUID, false);
         saveSingleNpcData(islandUUID);
         
-        debug("已显示 NPC: " + islandUUID);
+        debugLog.debug("已显示 NPC: {}", islandUUID);
         return true;
     }
     
@@ -158,8 +166,7 @@ public class FancyNpcProvider extends AbstractNpcProvider {
     public boolean moveNpc(UUID islandUUID, Location newLocation) {
         Npc npc = getNpc(islandUUID);
         if (npc == null) {
-            debug("移动NPC失败: NPC不存在 - " + islandUUID);
-            return false;
+            return moveRecord(islandUUID, newLocation);
         }
         
         boolean wasHidden = isNpcHidden(islandUUID);
@@ -172,235 +179,124 @@ public class FancyNpcProvider extends AbstractNpcProvider {
         }
         
         saveSingleNpcData(islandUUID);
-        debug("已移动 NPC: " + islandUUID);
+        debugLog.debug("已移动 NPC: {}", islandUUID);
         return true;
     }
     
-    @Override
-    public boolean hasNpc(UUID islandUUID) {
-        return islandNpcs.containsKey(islandUUID) && getNpc(islandUUID) != null;
-    }
-    
     @Override
     public Set<UUID> getAllIslandUUIDs() {
-        return islandNpcs.keySet();
+        Set<UUID> islands = new HashSet<>(boundCount * 2);
+        for (int handle = 0; handle < islandNpcs.length; handle++) {
+            if (islandNpcs[handle] != null) {
+                islands.add(islandHandles.uuidOf(handle));
+            }
+        }
+        return islands;
     }
     
     @Override
-    public boolean recreateNpc(UUID islandUUID) {
-        // 检查是否已经有NPC
-        if (islandNpcs.containsKey(islandUUID)) {
-            Npc existingNpc = FancyNpcsPlugin.get().getNpcManager().getNpcById(islandNpcs.get(islandUUID));
-            if (existingNpc != null && existingNpc.getEntityId() > 0) {
-                debug("NPC已存在且已生成，跳过重新创建: " + islandUUID);
-                return true;
-            }
-        }
-        
-        // 从配置读取保存的数据
-        ConfigurationSection section = plugin.getConfigManager().getNpcDataConfig()
-            .getConfigurationSection("npcs." + islandUUID.toString());
-        if (section == null) {
-            debug("未找到岛屿的NPC配置数据: " + islandUUID);
-            return false;
-        }
-        
-        // 读取位置
-        String worldName = section.getString("location.world");
-        double x = section.getDouble("location.x");
-        double y = section.getDouble("location.y");
-        double z = section.getDouble("location.z");
-        float yaw = plugin.getConfigManager().getNpcYaw();
-        float pitch = plugin.getConfigManager().getNpcPitch();
-        
-        org.bukkit.World world = org.bukkit.Bukkit.getWorld(worldName);
-        if (world == null) {
-            debug("世界不存在: " + worldName);
+    public boolean unloadNpc(UUID islandUUID) {
+        Npc npc = getNpc(islandUUID);
+        // 绑定的 NPC 已不存在时只移除映射，不计入释放统计
+        if (unbindNpc(islandUUID) == null || npc == null) {
             return false;
         }
         
-        Location location = new Location(world, x, y, z, yaw, pitch);
-        boolean hidden = section.getBoolean("hidden", false);
+        beforeNpcUnloaded(islandUUID);
         
-        // 创建NPC
-        boolean success = createNpc(islandUUID, location);
-        if (success && hidden) {
-            hideNpc(islandUUID);
-        }
+        npc.removeForAll();
+        FancyNpcsPlugin.get().getNpcManager().removeNpc(npc);
         
-        debug("重新创建NPC: " + islandUUID + ", 成功=" + success);
-        return success;
+        debugLog.debug("已释放 NPC: {}", islandUUID);
+        return true;
     }
     
     @Override
     public void reloadAllNpcs() {
-        debug("重新加载所有NPC...");
-        for (UUID islandUUID : islandNpcs.keySet()) {
-            Npc npc = getNpc(islandUUID);
+        debugLog.debug("重新加载所有NPC...");
+        EntityType entityType = plugin.getConfigManager().getSnapshot().getNpcEntityType();
+        String skin = plugin.getConfigManager().getNpcSkin();
+        for (int handle = 0; handle < islandNpcs.length; handle++) {
+            Npc npc = islandNpcs[handle] != null
+                ? FancyNpcsPlugin.get().getNpcManager().getNpcById(islandNpcs[handle]) : null;
             if (npc != null) {
-                boolean wasHidden = isNpcHidden(islandUUID);
+                boolean wasHidden = isNpcHidden(islandHandles.uuidOf(handle));
                 npc.removeForAll();
+                // 应用当前配置的实体类型和皮肤
+                npc.getData().setType(entityType);
+                if (entityType == EntityType.PLAYER && !skin.isEmpty()) {
+                    npc.getData().setSkin(skin);
+                }
                 npc.updateForAll();
                 if (!wasHidden) {
                     npc.spawnForAll();
                 }
             }
         }
-        debug("完成重新加载");
+        debugLog.debug("完成重新加载");
     }
     
     /**
      * 保存单个 NPC 数据（性能优化：只保存一个 NPC）
      */
     private void saveSingleNpcData(UUID islandUUID) {
-        if (!islandNpcs.containsKey(islandUUID)) {
-            return;
-        }
-        
-        String npcId = islandNpcs.get(islandUUID);
-        boolean hidden = hiddenNpcs.getOrDefault(islandUUID, false);
-        
-        Npc npc = FancyNpcsPlugin.get().getNpcManager().getNpcById(npcId);
+        Npc npc = getNpc(islandUUID);
         if (npc == null) {
             return;
         }
-
-        String path = "npcs." + islandUUID.toString();
-        
-        // 保存NPC ID
-        plugin.getConfigManager().getNpcDataConfig().set(path + ".npc-id", npcId);
-        
-        // 保存位置信息
-        Location loc = npc.getData().getLocation();
-        if (loc != null) {
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.world", 
-                loc.getWorld() != null ? loc.getWorld().getName() : "unknown");
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.x", loc.getX());
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.y", loc.getY());
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.z", loc.getZ());
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.yaw", loc.getYaw());
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".location.pitch", loc.getPitch());
-            
-            // 保存是否为 SlimeWorld
-            boolean isSlimeWorld = loc.getWorld() != null && 
-                com.magicbili.islandnpc.utils.WorldUtils.isSlimeWorld(loc.getWorld());
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".is_slimeworld", isSlimeWorld);
-        }
         
-        // 保存隐藏状态
-        plugin.getConfigManager().getNpcDataConfig().set(path + ".hidden", hidden);
-        
-        // 异步保存到磁盘（防抖：合并多次保存请求）
-        scheduleSave();
-    }
-    
-    /**
-     * 安排延迟保存任务（防抖机制）
-     * 多次调用会合并为一次保存，避免频繁 I/O
-     */
-    private void scheduleSave() {
-        if (saveTask != null && !saveTask.isCancelled()) {
-            // 已有保存任务，取消并重新安排
-            saveTask.cancel();
-        }
-        
-        // 延迟 20 ticks (1秒) 后保存，期间的多次保存会被合并
-        saveTask = org.bukkit.Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> {
-            plugin.getConfigManager().saveNpcData();
-            debug("[防抖保存] 已保存 NPC 数据到磁盘");
-        }, 20L);
+        // 标记为待保存，由刷盘线程批量写入磁盘
+        // FancyNpcs ID 每次生成都会变化且不会被读取，不写入记录
+        plugin.getConfigManager().putNpcRecord(
+            buildRecord(islandUUID, npc.getData().getLocation(), null, null));
     }
     
     @Override
     public void saveAllNpcData() {
-        for (Map.Entry<UUID, String> entry : islandNpcs.entrySet()) {
-            UUID islandUUID = entry.getKey();
-            String npcId = entry.getValue();
-            boolean hidden = hiddenNpcs.getOrDefault(islandUUID, false);
-            
-            Npc npc = FancyNpcsPlugin.get().getNpcManager().getNpcById(npcId);
+        for (int handle = 0; handle < islandNpcs.length; handle++) {
+            String npcId = islandNpcs[handle];
+            Npc npc = npcId != null ? FancyNpcsPlugin.get().getNpcManager().getNpcById(npcId) : null;
             if (npc == null) {
                 continue;
             }
-
-            String path = "npcs." + islandUUID.toString();
-            
-            // 保存NPC ID
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".npc-id", npcId);
-            
-            // 保存位置信息
-            Location loc = npc.getData().getLocation();
-            if (loc != null) {
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.world", 
-                    loc.getWorld() != null ? loc.getWorld().getName() : "unknown");
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.x", loc.getX());
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.y", loc.getY());
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.z", loc.getZ());
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.yaw", loc.getYaw());
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".location.pitch", loc.getPitch());
-                
-                // 保存是否为 SlimeWorld
-                boolean isSlimeWorld = loc.getWorld() != null && 
-                    com.magicbili.islandnpc.utils.WorldUtils.isSlimeWorld(loc.getWorld());
-                plugin.getConfigManager().getNpcDataConfig().set(path + ".is_slimeworld", isSlimeWorld);
-            }
-            
-            // 保存隐藏状态
-            plugin.getConfigManager().getNpcDataConfig().set(path + ".hidden", hidden);
+            // 只有内容变化的记录会被标记待保存，关闭时由刷盘线程按岛屿写入
+            plugin.getConfigManager().putNpcRecord(
+                buildRecord(islandHandles.uuidOf(handle), npc.getData().getLocation(), null, null));
         }
-        plugin.getConfigManager().saveNpcData();
     }
     
     @Override
     public void cleanup() {
-        debug("清理 FancyNpcs 提供者...");
+        debugLog.debug("清理 FancyNpcs 提供者...");
         saveAllNpcData();
-        debug("清理完成");
+        debugLog.debug("清理完成");
     }
     
     /**
      * 获取岛屿的NPC
      */
     private Npc getNpc(UUID islandUUID) {
-        if (!islandNpcs.containsKey(islandUUID)) {
-            return null;
-        }
-        return FancyNpcsPlugin.get().getNpcManager().getNpcById(islandNpcs.get(islandUUID));
+        String npcId = npcIdOf(islandUUID);
+        return npcId != null ? FancyNpcsPlugin.get().getNpcManager().getNpcById(npcId) : null;
     }
     
     /**
      * 加载NPC数据
      */
     private void loadNpcData() {
-        debug("开始加载NPC数据...");
-        ConfigurationSection section = plugin.getConfigManager().getNpcDataConfig()
-            .getConfigurationSection("npcs");
-        if (section == null) {
-            debug("没有找到NPC数据配置节点");
-            return;
-        }
-
+        debugLog.debug("开始加载NPC数据...");
         int loaded = 0;
-        for (String key : section.getKeys(false)) {
-            try {
-                UUID islandUUID = UUID.fromString(key);
-                String npcId = section.getString(key + ".npc-id");
-                boolean hidden = section.getBoolean(key + ".hidden", false);
-                
-                if (npcId != null) {
-                    islandNpcs.put(islandUUID, npcId);
-                }
-                hiddenNpcs.put(islandUUID, hidden);
-                loaded++;
-            } catch (IllegalArgumentException e) {
-                plugin.getLogger().warning("无效的岛屿UUID: " + key);
-            }
+        for (IslandNpcRecord record : plugin.getConfigManager().getNpcRecords().getAll()) {
+            // 不绑定记录中的 NPC ID：NPC 以 setSaveToFile(false) 创建，重启后记录中的 ID 都已失效，
+            // 绑定后 getAllIslandUUIDs 和释放统计会包含没有NPC的岛屿，NPC 由恢复流程重新生成并绑定
+            setHiddenState(record.getIslandUUID(), record.isHidden());
+            loaded++;
         }
         
         if (loaded > 0) {
             plugin.getLogger().info("加载了 " + loaded + " 个岛屿的NPC配置");
         }
-        debug("NPC数据加载完成");
+        debugLog.debug("NPC数据加载完成");
     }
     
     /**
@@ -410,12 +306,49 @@ public class FancyNpcProvider extends AbstractNpcProvider {
      */
     public UUID getIslandUUIDByNpcId(String npcId) {
         if (npcId == null) return null;
-        
-        for (Map.Entry<UUID, String> entry : islandNpcs.entrySet()) {
-            if (entry.getValue().equals(npcId)) {
-                return entry.getKey();
-            }
+        return npcIslands.get(npcId);
+    }
+    
+    /**
+     * 记录岛屿与 NPC ID 的双向映射
+     */
+    private void bindNpc(UUID islandUUID, String npcId) {
+        int handle = islandHandles.intern(islandUUID);
+        if (handle >= islandNpcs.length) {
+            islandNpcs = Arrays.copyOf(islandNpcs, Math.max(64, islandHandles.capacity() * 2));
         }
-        return null;
+        String previous = islandNpcs[handle];
+        if (previous == null) {
+            boundCount++;
+        } else if (!previous.equals(npcId)) {
+            npcIslands.remove(previous);
+        }
+        islandNpcs[handle] = npcId;
+        npcIslands.put(npcId, islandUUID);
+    }
+    
+    /**
+     * 移除岛屿与 NPC ID 的双向映射
+     * @return 被移除的 NPC ID，如果没有映射返回 null
+     */
+    private String unbindNpc(UUID islandUUID) {
+        int handle = islandHandles.find(islandUUID);
+        if (handle < 0 || handle >= islandNpcs.length || islandNpcs[handle] == null) {
+            return null;
+        }
+        String npcId = islandNpcs[handle];
+        islandNpcs[handle] = null;
+        boundCount--;
+        npcIslands.remove(npcId);
+        return npcId;
+    }
+    
+    /**
+     * 获取岛屿的 NPC ID
+     * @return NPC ID，没有NPC时返回 null
+     */
+    private String npcIdOf(UUID islandUUID) {
+        int handle = islandHandles.find(islandUUID);
+        return handle >= 0 && handle < islandNpcs.length ? islandNpcs[handle] : null;
     }
 }
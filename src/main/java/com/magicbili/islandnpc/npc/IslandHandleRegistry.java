@@ -0,0 +1,180 @@
+package com.magicbili.islandnpc.npc;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * 岛屿UUID -> 紧凑 int 句柄的驻留表
+ * 每个岛屿分配一个从 0 开始的连续句柄，岛屿的运行时状态（隐藏标记、NPC ID 等）
+ * 可以直接保存在按句柄索引的原始数组和 BitSet 中，不需要为每个映射单独保存装箱的 UUID 键；
+ * 全量遍历时按句柄顺序扫描数组，对缓存友好
+ *
+ * UUID 以两个 long 保存，查找表为开放寻址（线性探测），释放的句柄会被重新分配
+ * 只在主线程访问
+ *
+ * @author magicbili
+ */
+public final class IslandHandleRegistry {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // 句柄 -> UUID 高位/低位
+    private long[] mostBits;
+    private long[] leastBits;
+    // 开放寻址表，值为 句柄 + 1，0 表示空槽
+    private int[] table;
+    private int mask;
+    private int size;
+    // 已分配过的句柄上限（不含）
+    private int nextHandle;
+    // 释放后可重新分配的句柄
+    private int[] freeHandles = new int[16];
+    private int freeCount;
+
+    public IslandHandleRegistry() {
+        mostBits = new long[INITIAL_CAPACITY];
+        leastBits = new long[INITIAL_CAPACITY];
+        table = new int[INITIAL_CAPACITY * 2];
+        mask = table.length - 1;
+    }
+
+    /**
+     * 查找岛屿的句柄
+     * @param islandUUID 岛屿UUID
+     * @return 句柄，未分配时返回 -1
+     */
+    public int find(UUID islandUUID) {
+        long most = islandUUID.getMostSignificantBits();
+        long least = islandUUID.getLeastSignificantBits();
+        int slot = slot(most, least);
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int handle = entry - 1;
+            if (mostBits[handle] == most && leastBits[handle] == least) {
+                return handle;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 获取岛屿的句柄，未分配时分配一个
+     * @param islandUUID 岛屿UUID
+     * @return 句柄
+     */
+    public int intern(UUID islandUUID) {
+        int handle = find(islandUUID);
+        if (handle >= 0) {
+            return handle;
+        }
+        // 负载因子保持在 0.5 以下
+        if ((size + 1) * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            handle = nextHandle++;
+            if (handle == mostBits.length) {
+                mostBits = Arrays.copyOf(mostBits, handle * 2);
+                leastBits = Arrays.copyOf(leastBits, handle * 2);
+            }
+        }
+        mostBits[handle] = islandUUID.getMostSignificantBits();
+        leastBits[handle] = islandUUID.getLeastSignificantBits();
+        insert(handle);
+        size++;
+        return handle;
+    }
+
+    /**
+     * 释放岛屿的句柄，调用前需要清除按句柄保存的状态
+     * @param islandUUID 岛屿UUID
+     * @return 被释放的句柄，未分配时返回 -1
+     */
+    public int release(UUID islandUUID) {
+        long most = islandUUID.getMostSignificantBits();
+        long least = islandUUID.getLeastSignificantBits();
+        int slot = slot(most, least);
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int handle = entry - 1;
+            if (mostBits[handle] == most && leastBits[handle] == least) {
+                shiftBack(slot);
+                size--;
+                if (freeCount == freeHandles.length) {
+                    freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+                }
+                freeHandles[freeCount++] = handle;
+                return handle;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 获取句柄对应的岛屿UUID（只对已分配的句柄有效）
+     */
+    public UUID uuidOf(int handle) {
+        return new UUID(mostBits[handle], leastBits[handle]);
+    }
+
+    /**
+     * @return 已分配的岛屿数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 句柄上限（不含），按句柄保存的数组只需要覆盖这个范围
+     */
+    public int capacity() {
+        return nextHandle;
+    }
+
+    private void insert(int handle) {
+        int slot = slot(mostBits[handle], leastBits[handle]);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = handle + 1;
+    }
+
+    /**
+     * 删除后把同一探测链上的后续元素前移，保持查找链连续（无需墓碑）
+     */
+    private void shiftBack(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        int entry;
+        while ((entry = table[next]) != 0) {
+            int home = slot(mostBits[entry - 1], leastBits[entry - 1]);
+            // home 不在 (gap, next] 区间内时，元素可以移到空位
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                table[gap] = entry;
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldTable = table;
+        table = new int[capacity];
+        mask = capacity - 1;
+        for (int entry : oldTable) {
+            if (entry != 0) {
+                insert(entry - 1);
+            }
+        }
+    }
+
+    private int slot(long most, long least) {
+        long h = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
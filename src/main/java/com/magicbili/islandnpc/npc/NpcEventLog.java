@@ -0,0 +1,125 @@
+package com.magicbili.islandnpc.npc;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * 聚合的 NPC 事件日志
+ * 创建、删除等逐个 NPC 的事件只在调用线程累加计数，由后台线程每秒按操作汇总输出一行，
+ * 批量恢复或大量 SlimeWorld 加载时不会在主线程逐条写控制台
+ *
+ * 一个周期内只有一次的操作输出完整信息，多次的输出次数和最近一个对象
+ * 可以在任意线程调用 record()
+ *
+ * @author magicbili
+ */
+public class NpcEventLog implements Runnable {
+
+    private static final long SUMMARY_INTERVAL_MS = 1000L;
+
+    private final Logger logger;
+    // 操作 -> 计数器，按首次出现顺序输出；计数器清零后复用，不随事件分配对象
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+    private final Object lock = new Object();
+    private volatile boolean running = true;
+    private Thread thread;
+
+    public NpcEventLog(Logger logger) {
+        this.logger = logger;
+    }
+
+    public void start() {
+        thread = new Thread(this, "IslandNpc-EventLog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 记录一次事件（不阻塞，不拼接字符串）
+     * @param operation 操作名称，例如 "删除岛屿NPC"
+     * @param subject 操作对象，输出时才转换为字符串
+     */
+    public void record(String operation, Object subject) {
+        synchronized (counters) {
+            Counter counter = counters.get(operation);
+            if (counter == null) {
+                counter = new Counter();
+                counters.put(operation, counter);
+            }
+            counter.count++;
+            counter.last = subject;
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            synchronized (lock) {
+                try {
+                    lock.wait(SUMMARY_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            flush();
+        }
+    }
+
+    /**
+     * 输出并清空当前周期的计数
+     */
+    private void flush() {
+        List<String> lines = null;
+        synchronized (counters) {
+            for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+                Counter counter = entry.getValue();
+                if (counter.count == 0) {
+                    continue;
+                }
+                if (lines == null) {
+                    lines = new ArrayList<>();
+                }
+                if (counter.count == 1) {
+                    lines.add(entry.getKey() + ": " + counter.last);
+                } else {
+                    lines.add(entry.getKey() + ": " + counter.count + " 个（最近: " + counter.last + "）");
+                }
+                counter.count = 0;
+                counter.last = null;
+            }
+        }
+        // 在锁外写控制台，不阻塞 record()
+        if (lines != null) {
+            for (String line : lines) {
+                logger.info(line);
+            }
+        }
+    }
+
+    /**
+     * 停止后台线程并输出剩余的计数（插件禁用时调用）
+     */
+    public void shutdown() {
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join(2000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    private static final class Counter {
+        private int count;
+        private Object last;
+    }
+}
@@ -0,0 +1,127 @@
+package com.magicbili.islandnpc.npc;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Citizens NPC ID -> 岛屿UUID 的开放寻址哈希表
+ * 键为原始 int，交互时按 NPC ID 直接查找，不需要装箱或解析字符串
+ * 只在主线程访问
+ *
+ * @author magicbili
+ */
+public final class NpcIdIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] keys;
+    private UUID[] values; // null 表示空槽
+    private int size;
+    private int mask;
+
+    public NpcIdIndex() {
+        keys = new int[INITIAL_CAPACITY];
+        values = new UUID[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    /**
+     * 查找 NPC 所属岛屿
+     * @param npcId Citizens NPC ID
+     * @return 岛屿UUID，如果不是岛屿 NPC 返回 null
+     */
+    public UUID get(int npcId) {
+        int slot = slot(npcId);
+        UUID value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == npcId) {
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public void put(int npcId, UUID islandUUID) {
+        // 负载因子保持在 0.5 以下
+        if ((size + 1) * 2 > values.length) {
+            resize(values.length * 2);
+        }
+        int slot = slot(npcId);
+        while (values[slot] != null) {
+            if (keys[slot] == npcId) {
+                values[slot] = islandUUID;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = npcId;
+        values[slot] = islandUUID;
+        size++;
+    }
+
+    /**
+     * 删除映射
+     * @return 被删除的岛屿UUID，如果不存在返回 null
+     */
+    public UUID remove(int npcId) {
+        int slot = slot(npcId);
+        UUID value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == npcId) {
+                shiftBack(slot);
+                size--;
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * 删除后把同一探测链上的后续元素前移，保持查找链连续（无需墓碑）
+     */
+    private void shiftBack(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = slot(keys[next]);
+            // home 不在 (gap, next] 区间内时，元素可以移到空位
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        UUID[] oldValues = values;
+        keys = new int[capacity];
+        values = new UUID[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,39 @@
+package com.magicbili.islandnpc.npc;
+
+/**
+ * NPC 释放统计
+ * 记录世界卸载、区块卸载时释放的 NPC 和全息图数量，用于 /islandnpc stats
+ * 只在主线程访问
+ *
+ * @author magicbili
+ */
+public class NpcReleaseStats {
+
+    private long worldUnloads;
+    private long npcsReleased;
+    private long hologramsReleased;
+
+    public void recordWorldUnload() {
+        worldUnloads++;
+    }
+
+    public void recordNpcReleased() {
+        npcsReleased++;
+    }
+
+    public void recordHologramReleased() {
+        hologramsReleased++;
+    }
+
+    public long getWorldUnloads() {
+        return worldUnloads;
+    }
+
+    public long getNpcsReleased() {
+        return npcsReleased;
+    }
+
+    public long getHologramsReleased() {
+        return hologramsReleased;
+    }
+}
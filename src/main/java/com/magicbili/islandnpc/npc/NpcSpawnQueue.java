@@ -0,0 +1,131 @@
+package com.magicbili.islandnpc.npc;
+
+import com.magicbili.islandnpc.IslandNpcPlugin;
+import com.magicbili.islandnpc.api.NpcProvider;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NPC 分帧生成队列
+ * 每 tick 只在配置的时间预算内调用 recreateNpc，把大量 NPC 的恢复分摊到多个 tick，
+ * 避免启动时一次性创建所有 NPC 造成卡顿
+ *
+ * @author magicbili
+ */
+public class NpcSpawnQueue {
+
+    private final IslandNpcPlugin plugin;
+    private final Deque<UUID> queue = new ArrayDeque<>();
+    private BukkitTask task;
+
+    private int total;
+    private int processed;
+    private int succeeded;
+    private long startNanos;
+    private long lastReportNanos;
+
+    public NpcSpawnQueue(IslandNpcPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 添加需要恢复的岛屿
+     * @param islandUUIDs 岛屿UUID
+     */
+    public void enqueueAll(Collection<UUID> islandUUIDs) {
+        queue.addAll(islandUUIDs);
+        total += islandUUIDs.size();
+    }
+
+    /**
+     * 开始按 tick 处理队列
+     */
+    public void start() {
+        if (task != null || queue.isEmpty()) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+        plugin.getLogger().info("开始分帧恢复 " + queue.size() + " 个 NPC（每 tick 预算 "
+            + plugin.getConfigManager().getSpawnTickBudgetMs() + " ms）");
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    /**
+     * 停止处理并清空队列
+     */
+    public void cancel() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        queue.clear();
+    }
+
+    /**
+     * 获取队列中剩余的岛屿数量
+     */
+    public int getRemaining() {
+        return queue.size();
+    }
+
+    private void tick() {
+        NpcProvider npcProvider = plugin.getNpcProvider();
+        if (npcProvider == null) {
+            cancel();
+            return;
+        }
+
+        long tickStart = System.nanoTime();
+        long budgetNanos = TimeUnit.MICROSECONDS.toNanos(
+            (long) (plugin.getConfigManager().getSpawnTickBudgetMs() * 1000));
+
+        // 每 tick 至少处理一个，超出预算后留到下一个 tick
+        do {
+            UUID islandUUID = queue.poll();
+            if (islandUUID == null) {
+                break;
+            }
+            try {
+                if (npcProvider.recreateNpc(islandUUID)) {
+                    succeeded++;
+                }
+            } catch (Exception e) {
+                plugin.getLogger().severe("加载岛屿 " + islandUUID + " 的 NPC 时发生错误: " + e.getMessage());
+                e.printStackTrace();
+            }
+            processed++;
+        } while (System.nanoTime() - tickStart < budgetNanos);
+
+        long now = System.nanoTime();
+        if (queue.isEmpty()) {
+            task.cancel();
+            task = null;
+            plugin.getLogger().info("NPC 恢复完成: 成功 " + succeeded + " / " + total
+                + "，用时 " + formatSeconds(now - startNanos));
+            total = 0;
+            processed = 0;
+            succeeded = 0;
+            return;
+        }
+
+        long reportInterval = TimeUnit.SECONDS.toNanos(plugin.getConfigManager().getSpawnProgressInterval());
+        if (now - lastReportNanos >= reportInterval) {
+            lastReportNanos = now;
+            long elapsed = now - startNanos;
+            long eta = elapsed / processed * queue.size();
+            plugin.getLogger().info("正在恢复 NPC: " + processed + "/" + total
+                + " (" + (processed * 100 / total) + "%)，预计剩余 " + formatSeconds(eta));
+        }
+    }
+
+    private static String formatSeconds(long nanos) {
+        return String.format("%.1f 秒", nanos / 1_000_000_000.0);
+    }
+}
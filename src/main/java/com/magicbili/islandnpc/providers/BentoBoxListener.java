@@ -2,6 +2,7 @@ package com.magicbili.islandnpc.providers;
 
 import com.magicbili.islandnpc.IslandNpcPlugin;
 import com.magicbili.islandnpc.api.NpcProvider;
+import com.magicbili.islandnpc.utils.DebugLogger;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.event.EventHandler;
@@ -22,22 +23,15 @@ import java.util.UUID;
 public class BentoBoxListener implements Listener {
     
     private final IslandNpcPlugin plugin;
+    private final DebugLogger debugLog;
     private final NpcProvider npcProvider;
     
     public BentoBoxListener(IslandNpcPlugin plugin, NpcProvider npcProvider) {
         this.plugin = plugin;
+        this.debugLog = new DebugLogger(plugin, DebugLogger.Category.ISLAND, "");
         this.npcProvider = npcProvider;
     }
     
-    /**
-     * 输出debug日志（仅在debug模式启用时）
-     */
-    private void debug(String message) {
-        if (plugin.getConfigManager().isDebugEnabled()) {
-            plugin.getLogger().info("[DEBUG] " + message);
-        }
-    }
-    
     /**
      * 监听岛屿创建完成事件
      * 注意：BentoBox 使用 IslandCreatedEvent（已创建）而不是 IslandCreateEvent（创建中）
@@ -55,7 +49,7 @@ public class BentoBoxListener implements Listener {
                 
                 if (center != null) {
                     UUID islandUUID = UUID.fromString(island.getUniqueId());
-                    debug("岛屿创建: " + islandUUID);
+                    debugLog.debug("岛屿创建: {}", islandUUID);
                     createNpcForBentoBoxIsland(island);
                 }
             }
@@ -73,7 +67,7 @@ public class BentoBoxListener implements Listener {
             return;
         }
         
-        debug("玩家 " + event.getPlayerUUID() + " 进入岛屿: " + island.getUniqueId());
+        debugLog.debug("玩家 {} 进入岛屿: {}", event.getPlayerUUID(), island.getUniqueId());
         
         // 不再在此处创建 NPC，由世界加载事件统一处理
     }
@@ -86,15 +80,15 @@ public class BentoBoxListener implements Listener {
         Island island = event.getIsland();
         if (island != null) {
             UUID islandUUID = UUID.fromString(island.getUniqueId());
-            debug("监听到岛屿删除事件: " + islandUUID);
-            debug("岛屿拥有者: " + island.getOwner());
+            debugLog.debug("监听到岛屿删除事件: {}", islandUUID);
+            debugLog.debug("岛屿拥有者: {}", island.getOwner());
             
             // 异步删除NPC，避免阻塞主线程
             Bukkit.getScheduler().runTask(plugin, () -> {
                 npcProvider.deleteNpc(islandUUID);
             });
         } else {
-            debug("岛屿删除事件中的岛屿为 null");
+            debugLog.debug("岛屿删除事件中的岛屿为 null");
         }
     }
     
@@ -103,7 +97,7 @@ public class BentoBoxListener implements Listener {
      */
     private void createNpcForBentoBoxIsland(Island bentoBoxIsland) {
         if (npcProvider == null) {
-            debug("NPC提供者未初始化");
+            debugLog.debug("NPC提供者未初始化");
             return;
         }
         
@@ -114,7 +108,7 @@ public class BentoBoxListener implements Listener {
         }
         
         if (center == null) {
-            debug("无法为岛屿 " + islandUUID + " 创建NPC: 中心位置为null");
+            debugLog.debug("无法为岛屿 {} 创建NPC: 中心位置为null", islandUUID);
             return;
         }
         
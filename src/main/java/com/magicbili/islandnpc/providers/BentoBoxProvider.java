@@ -7,9 +7,13 @@ import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Listener;
 import world.bentobox.bentobox.BentoBox;
+import world.bentobox.bentobox.api.metadata.MetaDataValue;
 import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.bentobox.managers.IslandsManager;
 
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -20,6 +24,9 @@ import java.util.UUID;
  */
 public class BentoBoxProvider implements IslandProvider {
     
+    // 岛屿元数据中保存NPC记录的键（值为 Base64 编码的记录）
+    private static final String NPC_DATA_KEY = "islandnpc-npc";
+    
     private final IslandNpcPlugin plugin;
     private BentoBoxListener listener;
     private final BentoBox bentoBox;
@@ -95,6 +102,19 @@ public class BentoBoxProvider implements IslandProvider {
         return Bukkit.getOfflinePlayer(ownerUUID).getName();
     }
     
+    @Override
+    public UUID getIslandAt(Location location) {
+        Optional<Island> islandOpt = islandsManager.getIslandAt(location);
+        if (!islandOpt.isPresent()) {
+            return null;
+        }
+        try {
+            return UUID.fromString(islandOpt.get().getUniqueId());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
     @Override
     public boolean islandExists(UUID islandUUID) {
         return islandsManager.getIslandById(islandUUID.toString()).isPresent();
@@ -110,6 +130,49 @@ public class BentoBoxProvider implements IslandProvider {
         return listener;
     }
     
+    @Override
+    public boolean isReady() {
+        // BentoBox 在加载完所有附加组件和岛屿后才会标记为已加载
+        return bentoBox.isLoaded();
+    }
+    
+    @Override
+    public boolean saveNpcData(UUID islandUUID, byte[] data) {
+        Optional<Island> islandOpt = islandsManager.getIslandById(islandUUID.toString());
+        if (!islandOpt.isPresent()) {
+            return false;
+        }
+        // 元数据变化后由 BentoBox 异步保存岛屿
+        islandOpt.get().putMetaData(NPC_DATA_KEY, new MetaDataValue(Base64.getEncoder().encodeToString(data)));
+        return true;
+    }
+    
+    @Override
+    public void removeNpcData(UUID islandUUID) {
+        islandsManager.getIslandById(islandUUID.toString()).ifPresent(island -> {
+            if (island.getMetaData(NPC_DATA_KEY).isPresent()) {
+                island.removeMetaData(NPC_DATA_KEY);
+            }
+        });
+    }
+    
+    @Override
+    public Map<UUID, byte[]> loadAllNpcData() {
+        Map<UUID, byte[]> data = new HashMap<>();
+        for (Island island : islandsManager.getIslands()) {
+            Optional<MetaDataValue> value = island.getMetaData(NPC_DATA_KEY);
+            if (!value.isPresent()) {
+                continue;
+            }
+            try {
+                data.put(UUID.fromString(island.getUniqueId()), Base64.getDecoder().decode(value.get().asString()));
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("无法读取岛屿 " + island.getUniqueId() + " 的NPC数据: " + e.getMessage());
+            }
+        }
+        return data;
+    }
+    
     /**
      * 获取 BentoBox 实例
      * @return BentoBox 实例
@@ -3,10 +3,12 @@ package com.magicbili.islandnpc.providers;
 import com.bgsoftware.superiorskyblock.api.events.IslandCreateEvent;
 import com.bgsoftware.superiorskyblock.api.events.IslandDisbandEvent;
 import com.bgsoftware.superiorskyblock.api.events.IslandEnterEvent;
+import com.bgsoftware.superiorskyblock.api.events.PluginInitializedEvent;
 import com.bgsoftware.superiorskyblock.api.island.Island;
 import com.bgsoftware.superiorskyblock.api.world.Dimension;
 import com.magicbili.islandnpc.IslandNpcPlugin;
 import com.magicbili.islandnpc.api.NpcProvider;
+import com.magicbili.islandnpc.utils.DebugLogger;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.event.EventHandler;
@@ -21,49 +23,54 @@ import org.bukkit.event.Listener;
 public class SuperiorSkyblockListener implements Listener {
     
     private final IslandNpcPlugin plugin;
+    private final DebugLogger debugLog;
+    private final SuperiorSkyblockProvider islandProvider;
     private final NpcProvider npcProvider;
     
-    public SuperiorSkyblockListener(IslandNpcPlugin plugin, NpcProvider npcProvider) {
+    public SuperiorSkyblockListener(IslandNpcPlugin plugin, SuperiorSkyblockProvider islandProvider, NpcProvider npcProvider) {
         this.plugin = plugin;
+        this.debugLog = new DebugLogger(plugin, DebugLogger.Category.ISLAND, "");
+        this.islandProvider = islandProvider;
         this.npcProvider = npcProvider;
     }
     
     /**
-     * 输出debug日志（仅在debug模式启用时）
+     * SuperiorSkyblock2 完成初始化，岛屿数据已全部加载
      */
-    private void debug(String message) {
-        if (plugin.getConfigManager().isDebugEnabled()) {
-            plugin.getLogger().info("[DEBUG] " + message);
-        }
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginInitialized(PluginInitializedEvent event) {
+        debugLog.debug("SuperiorSkyblock2 初始化完成");
+        islandProvider.markDataLoaded();
     }
     
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onIslandCreate(IslandCreateEvent event) {
         Island island = event.getIsland();
         
-        debug("检测到岛屿创建事件: " + (island != null ? island.getUniqueId() : "null"));
-        if (island != null) {
-            debug("岛屿拥有者: " + (island.getOwner() != null ? island.getOwner().getName() : "未知"));
-            debug("岛屿世界: " + (island.getCenter(Dimension.getByName("NORMAL")) != null ? 
-                island.getCenter(Dimension.getByName("NORMAL")).getWorld().getName() : "未知"));
+        debugLog.debug("检测到岛屿创建事件: {}", island != null ? island.getUniqueId() : "null");
+        // 查询岛屿中心需要计算，只在启用时执行
+        if (island != null && debugLog.isEnabled()) {
+            Location center = island.getCenter(Dimension.getByName("NORMAL"));
+            debugLog.debug("岛屿拥有者: {}", island.getOwner() != null ? island.getOwner().getName() : "未知");
+            debugLog.debug("岛屿世界: {}", center != null ? center.getWorld().getName() : "未知");
         }
         
         Bukkit.getScheduler().runTaskLater(plugin, () -> {
             if (island != null && npcProvider != null) {
-                debug("延迟任务执行: 开始为岛屿 " + island.getUniqueId() + " 创建 NPC");
+                debugLog.debug("延迟任务执行: 开始为岛屿 {} 创建 NPC", island.getUniqueId());
                 Dimension normalDimension = Dimension.getByName("NORMAL");
                 Location center = island.getCenter(normalDimension);
                 if (center != null) {
-                    debug("岛屿中心位置: " + center);
+                    debugLog.debug("岛屿中心位置: {}", center);
                     Location spawnLoc = calculateSpawnLocation(center);
-                    debug("NPC 生成位置: " + spawnLoc);
+                    debugLog.debug("NPC 生成位置: {}", spawnLoc);
                     boolean success = npcProvider.createNpc(island.getUniqueId(), spawnLoc);
-                    debug("NPC 创建结果: " + success);
+                    debugLog.debug("NPC 创建结果: {}", success);
                 } else {
-                    debug("岛屿中心位置为 null，无法创建 NPC");
+                    debugLog.debug("岛屿中心位置为 null，无法创建 NPC");
                 }
             } else {
-                debug("延迟任务执行失败: island=" + (island != null) + ", npcProvider=" + (npcProvider != null));
+                debugLog.debug("延迟任务执行失败: island={}, npcProvider={}", island != null, npcProvider != null);
             }
         }, 20L);
     }
@@ -79,7 +86,7 @@ public class SuperiorSkyblockListener implements Listener {
             return;
         }
         
-        debug("玩家 " + event.getPlayer().getName() + " 进入岛屿: " + island.getUniqueId());
+        debugLog.debug("玩家 {} 进入岛屿: {}", event.getPlayer().getName(), island.getUniqueId());
         
         // 不再在此处创建 NPC，由世界加载事件统一处理
         // 这样可以避免重复创建的问题
@@ -89,16 +96,15 @@ public class SuperiorSkyblockListener implements Listener {
     public void onIslandDisband(IslandDisbandEvent event) {
         Island island = event.getIsland();
         if (island != null && npcProvider != null) {
-            debug("监听到岛屿删除事件: " + island.getUniqueId());
-            debug("岛屿拥有者: " + 
-                (island.getOwner() != null ? island.getOwner().getName() : "未知"));
+            debugLog.debug("监听到岛屿删除事件: {}", island.getUniqueId());
+            debugLog.debug("岛屿拥有者: {}", island.getOwner() != null ? island.getOwner().getName() : "未知");
             
             // 异步删除NPC，避免阻塞主线程
             Bukkit.getScheduler().runTask(plugin, () -> {
                 npcProvider.deleteNpc(island.getUniqueId());
             });
         } else {
-            debug("岛屿删除事件中的岛屿为 null");
+            debugLog.debug("岛屿删除事件中的岛屿为 null");
         }
     }
     
@@ -1,7 +1,10 @@
 package com.magicbili.islandnpc.providers;
 
 import com.bgsoftware.superiorskyblock.api.SuperiorSkyblockAPI;
+import com.bgsoftware.superiorskyblock.api.handlers.GridManager;
 import com.bgsoftware.superiorskyblock.api.island.Island;
+import com.bgsoftware.superiorskyblock.api.persistence.PersistentDataContainer;
+import com.bgsoftware.superiorskyblock.api.persistence.PersistentDataType;
 import com.bgsoftware.superiorskyblock.api.wrappers.SuperiorPlayer;
 import com.bgsoftware.superiorskyblock.api.world.Dimension;
 import com.magicbili.islandnpc.IslandNpcPlugin;
@@ -10,6 +13,8 @@ import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Listener;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -19,13 +24,37 @@ import java.util.UUID;
  */
 public class SuperiorSkyblockProvider implements IslandProvider {
     
+    // 岛屿 PersistentDataContainer 中保存NPC记录的键
+    private static final String NPC_DATA_KEY = "islandnpc:npc";
+    
     private final IslandNpcPlugin plugin;
     private SuperiorSkyblockListener listener;
+    private volatile boolean dataLoaded = false;
     
     public SuperiorSkyblockProvider(IslandNpcPlugin plugin) {
         this.plugin = plugin;
         // 延迟初始化 listener，因为此时 NpcProvider 可能还未创建
         // listener 会在 getEventListener() 被调用时初始化
+        // 本插件在服务器启动后才启用时（重载或后装）PluginInitializedEvent 已经触发过
+        this.dataLoaded = isAlreadyInitialized();
+    }
+    
+    /**
+     * 检查 SuperiorSkyblock2 是否已经完成初始化
+     * 岛屿只会在数据加载完成后进入 Grid，Grid 中已有岛屿即说明数据已加载；
+     * 没有岛屿时无法判断，等待 PluginInitializedEvent 或启动超时
+     */
+    private boolean isAlreadyInitialized() {
+        if (!org.bukkit.Bukkit.getPluginManager().isPluginEnabled("SuperiorSkyblock2")) {
+            return false;
+        }
+        try {
+            GridManager grid = SuperiorSkyblockAPI.getGrid();
+            return grid != null && !grid.getIslands().isEmpty();
+        } catch (RuntimeException e) {
+            // 尚未初始化时 API 可能抛出异常
+            return false;
+        }
     }
     
     @Override
@@ -75,6 +104,12 @@ public class SuperiorSkyblockProvider implements IslandProvider {
         return island.getOwner().getName();
     }
     
+    @Override
+    public UUID getIslandAt(Location location) {
+        Island island = SuperiorSkyblockAPI.getIslandAt(location);
+        return island != null ? island.getUniqueId() : null;
+    }
+    
     @Override
     public boolean islandExists(UUID islandUUID) {
         return SuperiorSkyblockAPI.getIslandByUUID(islandUUID) != null;
@@ -84,9 +119,63 @@ public class SuperiorSkyblockProvider implements IslandProvider {
     public Listener getEventListener() {
         // 延迟初始化：确保 NpcProvider 已经创建
         if (listener == null) {
-            listener = new SuperiorSkyblockListener(plugin, plugin.getNpcProvider());
+            listener = new SuperiorSkyblockListener(plugin, this, plugin.getNpcProvider());
             plugin.getLogger().info("已初始化 SuperiorSkyblock 事件监听器");
         }
         return listener;
     }
+    
+    @Override
+    public boolean isReady() {
+        return dataLoaded;
+    }
+    
+    @Override
+    public boolean saveNpcData(UUID islandUUID, byte[] data) {
+        Island island = SuperiorSkyblockAPI.getIslandByUUID(islandUUID);
+        if (island == null) {
+            return false;
+        }
+        island.getPersistentDataContainer().put(NPC_DATA_KEY, PersistentDataType.BYTE_ARRAY, data);
+        // 由 SuperiorSkyblock2 异步写入数据库
+        island.savePersistentDataContainer();
+        return true;
+    }
+    
+    @Override
+    public void removeNpcData(UUID islandUUID) {
+        Island island = SuperiorSkyblockAPI.getIslandByUUID(islandUUID);
+        if (island == null || island.isPersistentDataContainerEmpty()) {
+            return;
+        }
+        PersistentDataContainer container = island.getPersistentDataContainer();
+        if (container.has(NPC_DATA_KEY)) {
+            container.remove(NPC_DATA_KEY);
+            island.savePersistentDataContainer();
+        }
+    }
+    
+    @Override
+    public Map<UUID, byte[]> loadAllNpcData() {
+        Map<UUID, byte[]> data = new HashMap<>();
+        for (Island island : SuperiorSkyblockAPI.getGrid().getIslands()) {
+            // 避免为没有数据的岛屿创建空容器
+            if (island.isPersistentDataContainerEmpty()) {
+                continue;
+            }
+            byte[] bytes = island.getPersistentDataContainer().get(NPC_DATA_KEY, PersistentDataType.BYTE_ARRAY);
+            if (bytes != null) {
+                data.put(island.getUniqueId(), bytes);
+            }
+        }
+        return data;
+    }
+    
+    /**
+     * 标记 SuperiorSkyblock2 已完成初始化（岛屿数据已加载）
+     * 由 PluginInitializedEvent 触发，本插件后于 SuperiorSkyblock2 初始化启用时由构造方法检查
+     */
+    void markDataLoaded() {
+        dataLoaded = true;
+    }
 }
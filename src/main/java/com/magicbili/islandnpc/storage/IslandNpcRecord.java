@@ -0,0 +1,209 @@
+package com.magicbili.islandnpc.storage;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * 岛屿NPC持久化记录（不可变）
+ * 内存中的NPC数据模型，磁盘格式由存储层负责编码
+ *
+ * @author magicbili
+ */
+public final class IslandNpcRecord {
+
+    private final UUID islandUUID;
+    private final String worldName;
+    private final double x;
+    private final double y;
+    private final double z;
+    private final float yaw;
+    private final float pitch;
+    private final boolean hidden;
+    private final Boolean slimeWorld;
+    private final String npcId;
+    private final String dialogId;
+
+    /**
+     * @param islandUUID 岛屿UUID
+     * @param worldName 世界名称，为 null 表示没有位置信息
+     * @param slimeWorld 是否为 SlimeWorld，为 null 表示未知（旧数据）
+     * @param npcId NPC ID（FancyNpcs），可为 null
+     * @param dialogId 对话框ID，可为 null
+     */
+    public IslandNpcRecord(UUID islandUUID, String worldName, double x, double y, double z,
+                           float yaw, float pitch, boolean hidden, Boolean slimeWorld,
+                           String npcId, String dialogId) {
+        this.islandUUID = islandUUID;
+        this.worldName = worldName;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.hidden = hidden;
+        this.slimeWorld = slimeWorld;
+        this.npcId = npcId;
+        this.dialogId = dialogId;
+    }
+
+    /**
+     * 从旧版 npcdata.yml 的岛屿节点读取记录
+     * @param islandUUID 岛屿UUID
+     * @param section npcs.&lt;uuid&gt; 节点
+     */
+    public static IslandNpcRecord fromConfig(UUID islandUUID, ConfigurationSection section) {
+        return new IslandNpcRecord(
+            islandUUID,
+            section.getString("location.world"),
+            section.getDouble("location.x"),
+            section.getDouble("location.y"),
+            section.getDouble("location.z"),
+            (float) section.getDouble("location.yaw"),
+            (float) section.getDouble("location.pitch"),
+            section.getBoolean("hidden", false),
+            section.contains("is_slimeworld") ? section.getBoolean("is_slimeworld") : null,
+            section.getString("npc-id"),
+            section.getString("dialog-id")
+        );
+    }
+
+    public UUID getIslandUUID() {
+        return islandUUID;
+    }
+
+    public String getWorldName() {
+        return worldName;
+    }
+
+    public boolean hasLocation() {
+        return worldName != null;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public float getYaw() {
+        return yaw;
+    }
+
+    public float getPitch() {
+        return pitch;
+    }
+
+    /**
+     * @return NPC 所在区块的 X 坐标
+     */
+    public int getChunkX() {
+        return (int) Math.floor(x) >> 4;
+    }
+
+    /**
+     * @return NPC 所在区块的 Z 坐标
+     */
+    public int getChunkZ() {
+        return (int) Math.floor(z) >> 4;
+    }
+
+    public boolean isHidden() {
+        return hidden;
+    }
+
+    /**
+     * @return 是否为 SlimeWorld，旧数据没有该标记时返回 null
+     */
+    public Boolean getSlimeWorld() {
+        return slimeWorld;
+    }
+
+    public String getNpcId() {
+        return npcId;
+    }
+
+    public String getDialogId() {
+        return dialogId;
+    }
+
+    /**
+     * 转换为指定世界中的位置
+     * @param world 世界
+     * @param yaw 朝向
+     * @param pitch 俯仰角
+     */
+    public Location toLocation(World world, float yaw, float pitch) {
+        return new Location(world, x, y, z, yaw, pitch);
+    }
+
+    public IslandNpcRecord withHidden(boolean hidden) {
+        if (this.hidden == hidden) {
+            return this;
+        }
+        return new IslandNpcRecord(islandUUID, worldName, x, y, z, yaw, pitch, hidden, slimeWorld, npcId, dialogId);
+    }
+
+    public IslandNpcRecord withLocation(Location location, Boolean slimeWorld) {
+        String world = location.getWorld() != null ? location.getWorld().getName() : "unknown";
+        return new IslandNpcRecord(islandUUID, world, location.getX(), location.getY(), location.getZ(),
+            location.getYaw(), location.getPitch(), hidden, slimeWorld, npcId, dialogId);
+    }
+
+    /**
+     * 按偏移量平移位置，世界和朝向不变
+     */
+    public IslandNpcRecord withOffset(double dx, double dy, double dz) {
+        return new IslandNpcRecord(islandUUID, worldName, x + dx, y + dy, z + dz, yaw, pitch, hidden, slimeWorld, npcId, dialogId);
+    }
+
+    public IslandNpcRecord withNpcId(String npcId) {
+        return new IslandNpcRecord(islandUUID, worldName, x, y, z, yaw, pitch, hidden, slimeWorld, npcId, dialogId);
+    }
+
+    public IslandNpcRecord withDialogId(String dialogId) {
+        return new IslandNpcRecord(islandUUID, worldName, x, y, z, yaw, pitch, hidden, slimeWorld, npcId, dialogId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IslandNpcRecord)) {
+            return false;
+        }
+        IslandNpcRecord other = (IslandNpcRecord) o;
+        return islandUUID.equals(other.islandUUID)
+            && Double.compare(x, other.x) == 0
+            && Double.compare(y, other.y) == 0
+            && Double.compare(z, other.z) == 0
+            && Float.compare(yaw, other.yaw) == 0
+            && Float.compare(pitch, other.pitch) == 0
+            && hidden == other.hidden
+            && Objects.equals(worldName, other.worldName)
+            && Objects.equals(slimeWorld, other.slimeWorld)
+            && Objects.equals(npcId, other.npcId)
+            && Objects.equals(dialogId, other.dialogId);
+    }
+
+    @Override
+    public int hashCode() {
+        return islandUUID.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "IslandNpcRecord{" + islandUUID + ", world=" + worldName + ", hidden=" + hidden
+            + ", slimeWorld=" + slimeWorld + ", npcId=" + npcId + "}";
+    }
+}
@@ -0,0 +1,103 @@
+package com.magicbili.islandnpc.storage;
+
+import com.magicbili.islandnpc.IslandNpcPlugin;
+import com.magicbili.islandnpc.api.IslandProvider;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 把 NPC 记录保存在岛屿插件的岛屿数据中
+ * （SuperiorSkyblock2 的岛屿 PersistentDataContainer / BentoBox 的岛屿元数据）
+ * 记录由岛屿插件自己的异步持久化保存，岛屿解散时随岛屿一起删除，不需要额外保存全局文件
+ *
+ * 值与 npcdata.log 的记录格式相同（256 字节，带 CRC32）
+ * 只在主线程访问
+ *
+ * @author magicbili
+ */
+public class IslandNpcStorage {
+
+    private final IslandNpcPlugin plugin;
+    // 记录保存在岛屿数据中（而不是全局存储）的岛屿
+    private final Set<UUID> islandStored = new HashSet<>();
+
+    public IslandNpcStorage(IslandNpcPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 岛屿的记录是否保存在岛屿数据中
+     */
+    public boolean isIslandStored(UUID islandUUID) {
+        return islandStored.contains(islandUUID);
+    }
+
+    /**
+     * 写入记录到岛屿数据
+     * @return 是否写入成功，岛屿插件未就绪或岛屿不存在时返回 false
+     */
+    public boolean write(IslandNpcRecord record) {
+        IslandProvider islandProvider = plugin.getIslandProvider();
+        if (islandProvider == null || !islandProvider.isReady()) {
+            return false;
+        }
+        if (!islandProvider.saveNpcData(record.getIslandUUID(), NpcRecordLog.toBytes(record))) {
+            islandStored.remove(record.getIslandUUID());
+            return false;
+        }
+        islandStored.add(record.getIslandUUID());
+        return true;
+    }
+
+    /**
+     * 删除岛屿数据中的记录
+     */
+    public void remove(UUID islandUUID) {
+        islandStored.remove(islandUUID);
+        IslandProvider islandProvider = plugin.getIslandProvider();
+        if (islandProvider != null && islandProvider.isReady()) {
+            islandProvider.removeNpcData(islandUUID);
+        }
+    }
+
+    /**
+     * 读取所有岛屿数据中保存的记录（岛屿插件就绪后调用）
+     * 校验失败的记录会被忽略
+     * @return 记录列表
+     */
+    public List<IslandNpcRecord> loadAll() {
+        List<IslandNpcRecord> records = new ArrayList<>();
+        IslandProvider islandProvider = plugin.getIslandProvider();
+        if (islandProvider == null) {
+            return records;
+        }
+        for (Map.Entry<UUID, byte[]> entry : islandProvider.loadAllNpcData().entrySet()) {
+            IslandNpcRecord record = NpcRecordLog.fromBytes(entry.getValue());
+            if (record == null || !record.getIslandUUID().equals(entry.getKey())) {
+                plugin.getLogger().warning("岛屿 " + entry.getKey() + " 中保存的NPC记录无效，已忽略");
+                continue;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * 标记岛屿的记录保存在岛屿数据中（从岛屿数据加载后调用）
+     */
+    public void markIslandStored(UUID islandUUID) {
+        islandStored.add(islandUUID);
+    }
+
+    /**
+     * 获取记录保存在岛屿数据中的岛屿数量
+     */
+    public int size() {
+        return islandStored.size();
+    }
+}
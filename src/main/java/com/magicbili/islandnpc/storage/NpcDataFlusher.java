@@ -0,0 +1,290 @@
+package com.magicbili.islandnpc.storage;
+
+import com.magicbili.islandnpc.IslandNpcPlugin;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NPC 数据刷盘线程
+ * 主线程只把变更的岛屿放入脏集合（同一岛屿只保留最新状态），由常驻线程批量写入存储后端
+ *
+ * 刷盘时机：
+ * 1. 最早的未保存变更超过最大延迟（max-latency）
+ * 2. 脏集合达到批量上限（max-batch）时立即刷盘，积压超过一批时连续刷盘不再等待
+ *
+ * 背压：脏集合积压达到 4 批时，markDirty() 在主线程等待刷盘线程写完一批后再返回（每次最多 100ms），
+ * 积压不再无限增长，大量变更的产生速度被限制在磁盘写入速度；
+ * 等待超时后直到刷盘线程有进展前不再等待，存储故障时不会拖慢每次调用
+ *
+ * 线程在NPC数据加载完成后才启动，加载期间（包括导入旧数据时的重写）不会写入存储，
+ * 加载前的变更留在脏集合中，启动后写入
+ *
+ * @author magicbili
+ */
+public class NpcDataFlusher implements Runnable {
+
+    private static final int BACKPRESSURE_BATCHES = 4;
+    private static final long BACKPRESSURE_MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final IslandNpcPlugin plugin;
+    private final NpcStorage storage;
+    private final long maxLatencyNanos;
+    private final int maxBatch;
+    private final int backpressureLimit;
+
+    // 值为 Optional.empty() 表示岛屿已删除
+    private final Map<UUID, Optional<IslandNpcRecord>> dirty = new ConcurrentHashMap<>();
+    private final AtomicLong firstDirtyNanos = new AtomicLong();
+    private final Object lock = new Object();
+    private volatile boolean running = true;
+    private Thread thread;
+    private long snapshotVersion;
+
+    // 统计
+    private volatile int peakQueueDepth;
+    private volatile long flushCount;
+    private volatile long recordsWritten;
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+    private volatile long backpressureCount;
+    private volatile long backpressureNanos;
+    // 上次背压等待超时时的刷盘次数
+    private long stalledFlushCount = -1;
+
+    /**
+     * @param maxLatencyMs 变更最长等待多久写入磁盘（毫秒）
+     * @param maxBatch 每次最多写入的岛屿数量
+     */
+    public NpcDataFlusher(IslandNpcPlugin plugin, NpcStorage storage, long maxLatencyMs, int maxBatch) {
+        this.plugin = plugin;
+        this.storage = storage;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMs);
+        this.maxBatch = maxBatch;
+        this.backpressureLimit = maxBatch * BACKPRESSURE_BATCHES;
+    }
+
+    public void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this, "IslandNpc-Flusher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 标记岛屿记录待保存（主线程调用）
+     * 积压未超过背压上限时不阻塞
+     * @param islandUUID 岛屿UUID
+     * @param record 最新记录，为 null 表示删除
+     */
+    public void markDirty(UUID islandUUID, IslandNpcRecord record) {
+        dirty.put(islandUUID, Optional.ofNullable(record));
+        int depth = dirty.size();
+        if (depth > peakQueueDepth) {
+            peakQueueDepth = depth;
+        }
+
+        boolean first = firstDirtyNanos.compareAndSet(0, System.nanoTime());
+        if (depth >= backpressureLimit) {
+            applyBackpressure();
+        } else if (first || depth >= maxBatch) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等待刷盘线程写完一批（或积压降到背压上限以下），最多等待 100ms
+     */
+    private void applyBackpressure() {
+        Thread flusher = thread;
+        // 线程未启动（数据加载完成前）或已退出时没有人会取走积压
+        if (flusher == null || !flusher.isAlive() || Thread.currentThread() == flusher) {
+            return;
+        }
+        // 上次等待超时后刷盘线程还没有进展，不再等待
+        if (stalledFlushCount == flushCount) {
+            return;
+        }
+        backpressureCount++;
+        long flushesBefore = flushCount;
+        long start = System.nanoTime();
+        long deadline = start + BACKPRESSURE_MAX_WAIT_NANOS;
+        synchronized (lock) {
+            lock.notifyAll();
+            try {
+                while (running && flushCount == flushesBefore && dirty.size() >= backpressureLimit) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        stalledFlushCount = flushCount;
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        backpressureNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * 写入所有剩余变更并停止线程
+     */
+    public void shutdown() {
+        running = false;
+        if (thread == null) {
+            // 数据加载完成前关闭：启动线程写入剩余变更后立即退出
+            start();
+        }
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                plugin.getLogger().warning("NPC 数据刷盘线程未能在 10 秒内结束");
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                synchronized (lock) {
+                    while (running && !hasWork()) {
+                        lock.wait();
+                    }
+                    if (!running && !hasWork()) {
+                        break;
+                    }
+                    // 等待达到最大延迟或批量上限，关闭时立即刷盘
+                    long first = firstDirtyNanos.get();
+                    long deadline = (first != 0 ? first : System.nanoTime()) + maxLatencyNanos;
+                    while (running && dirty.size() < maxBatch) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    }
+                }
+                flushBatch();
+                // 唤醒因背压等待的主线程
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                plugin.getLogger().severe("NPC 数据刷盘失败: " + e.getMessage());
+                e.printStackTrace();
+                if (!running) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean hasWork() {
+        return !dirty.isEmpty() || storage.hasPending();
+    }
+
+    /**
+     * 取出最多一批变更，作为快照写入存储
+     */
+    private void flushBatch() throws IOException {
+        Map<UUID, IslandNpcRecord> batch = new LinkedHashMap<>();
+        for (Map.Entry<UUID, Optional<IslandNpcRecord>> entry : dirty.entrySet()) {
+            if (batch.size() >= maxBatch) {
+                break;
+            }
+            // 只移除取出时的值，期间主线程再次修改的记录留到下一批
+            if (dirty.remove(entry.getKey(), entry.getValue())) {
+                batch.put(entry.getKey(), entry.getValue().orElse(null));
+            }
+        }
+
+        if (dirty.isEmpty()) {
+            firstDirtyNanos.set(0);
+            if (!dirty.isEmpty()) {
+                firstDirtyNanos.compareAndSet(0, System.nanoTime());
+            }
+        }
+
+        long start = System.nanoTime();
+        if (!batch.isEmpty()) {
+            storage.enqueue(new NpcDataSnapshot(++snapshotVersion, batch));
+        }
+        // 写入失败的快照保留在存储的队列中，下次重试
+        storage.flush();
+        long elapsed = System.nanoTime() - start;
+
+        flushCount++;
+        recordsWritten += batch.size();
+        lastFlushNanos = elapsed;
+        if (elapsed > maxFlushNanos) {
+            maxFlushNanos = elapsed;
+        }
+
+        if (storage.needsCompaction()) {
+            storage.compact();
+        }
+    }
+
+    /**
+     * @return 等待写入的岛屿数量
+     */
+    public int getQueueDepth() {
+        return dirty.size();
+    }
+
+    public int getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    public long getLastFlushMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastFlushNanos);
+    }
+
+    public long getMaxFlushMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxFlushNanos);
+    }
+
+    /**
+     * @return 主线程因积压超过背压上限而等待的次数
+     */
+    public long getBackpressureCount() {
+        return backpressureCount;
+    }
+
+    /**
+     * @return 主线程因背压等待的总时间（毫秒）
+     */
+    public long getBackpressureMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(backpressureNanos);
+    }
+}
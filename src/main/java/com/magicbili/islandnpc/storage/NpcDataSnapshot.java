@@ -0,0 +1,43 @@
+package com.magicbili.islandnpc.storage;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 待保存数据的不可变快照
+ * 主线程把两次保存之间变更过的岛屿（每个岛屿只保留最新状态）发布为一个快照，
+ * 异步写入线程只序列化快照，不接触主线程正在修改的数据
+ *
+ * @author magicbili
+ */
+public final class NpcDataSnapshot {
+
+    private final long version;
+    private final Map<UUID, IslandNpcRecord> changes;
+
+    /**
+     * @param version 快照版本号，按发布顺序递增
+     * @param changes 变更的岛屿记录，值为 null 表示岛屿已删除
+     */
+    public NpcDataSnapshot(long version, Map<UUID, IslandNpcRecord> changes) {
+        this.version = version;
+        this.changes = Collections.unmodifiableMap(new LinkedHashMap<>(changes));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return 变更的岛屿记录（只读），值为 null 表示岛屿已删除
+     */
+    public Map<UUID, IslandNpcRecord> getChanges() {
+        return changes;
+    }
+
+    public int size() {
+        return changes.size();
+    }
+}
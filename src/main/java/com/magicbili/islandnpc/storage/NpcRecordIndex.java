@@ -0,0 +1,273 @@
+package com.magicbili.islandnpc.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * NPC 记录日志的内存映射索引（npcdata.log.idx）
+ * 每次压缩或重写日志时生成，按岛屿UUID排序的定长条目记录每个岛屿在日志中的偏移；
+ * 查询时在映射的索引上二分查找，再从日志中按偏移读取并校验这一条记录，不需要先解码整个日志
+ *
+ * 只映射索引文件（索引只会被原子重命名替换，不会被截断）；日志在加载期间可能被 open() 截断，
+ * 因此不映射日志，而是按偏移读取，读到文件末尾之外时只返回 null，不会因访问被截断的映射而崩溃
+ *
+ * 索引只覆盖生成时的日志内容，之后追加的记录在每次查询前从日志尾部增量读取
+ * 只在启动时完整加载完成之前使用，加载完成后即关闭
+ *
+ * 文件头布局（32 字节）：
+ * [0-3] 魔数 [4-7] 版本 [8-15] 对应的日志代数 [16-23] 索引覆盖的日志长度 [24-27] 条目数 [28-31] 文件头 CRC32
+ *
+ * 条目布局（24 字节）：
+ * [0-7] UUID 高位 [8-15] UUID 低位 [16-23] 记录在日志中的偏移
+ *
+ * @author magicbili
+ */
+public class NpcRecordIndex implements NpcRecordLookup {
+
+    private static final int MAGIC = 0x494E5058; // "INPX"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int HEADER_CRC_OFFSET = HEADER_SIZE - 4;
+    private static final int ENTRY_SIZE = 24;
+
+    private final FileChannel log;
+    private final ByteBuffer entries;
+    private final ByteBuffer record = ByteBuffer.allocate(NpcRecordLog.RECORD_SIZE);
+    private final long baseEnd;
+    private final int count;
+    // 索引生成后追加的记录，值为 null 表示已删除
+    private final Map<UUID, IslandNpcRecord> tail = new HashMap<>();
+    // 已读取到 tail 中的日志位置
+    private long tailEnd;
+    private boolean closed;
+
+    private NpcRecordIndex(FileChannel log, ByteBuffer entries, long baseEnd, int count) {
+        this.log = log;
+        this.entries = entries;
+        this.baseEnd = baseEnd;
+        this.count = count;
+        this.tailEnd = baseEnd;
+    }
+
+    /**
+     * 映射索引并打开对应的日志（只读）
+     * @param logGeneration 日志文件头中的代数，与索引不一致时说明索引已过期
+     * @return 索引，不存在、已过期或损坏时返回 null
+     */
+    static NpcRecordIndex open(Path logPath, Path indexPath, long logGeneration) throws IOException {
+        FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ);
+        try (FileChannel index = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            if (index.size() < HEADER_SIZE) {
+                log.close();
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && index.read(header, header.position()) > 0) {
+                // 读满文件头
+            }
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), 0, HEADER_CRC_OFFSET);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION
+                    || header.getInt(HEADER_CRC_OFFSET) != (int) crc.getValue()
+                    || header.getLong(8) != logGeneration) {
+                log.close();
+                return null;
+            }
+
+            long baseEnd = header.getLong(16);
+            int count = header.getInt(24);
+            long entriesSize = (long) count * ENTRY_SIZE;
+            if (count < 0 || baseEnd > log.size()
+                    || index.size() < HEADER_SIZE + entriesSize || entriesSize > Integer.MAX_VALUE) {
+                log.close();
+                return null;
+            }
+
+            // 映射在通道关闭后仍然有效
+            ByteBuffer entries = index.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, entriesSize);
+            return new NpcRecordIndex(log, entries, baseEnd, count);
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 为刚写入的一代日志生成索引（临时文件 + fsync + 原子替换）
+     * @param keys 按日志中的顺序排列的岛屿UUID
+     * @param dataStart 第一条记录的偏移
+     * @param generation 日志代数
+     */
+    static void write(Path indexPath, List<UUID> keys, long dataStart, long generation) throws IOException {
+        int count = keys.size();
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> keys.get(a).compareTo(keys.get(b)));
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, MAGIC);
+        header.putInt(4, FORMAT_VERSION);
+        header.putLong(8, generation);
+        header.putLong(16, dataStart + (long) count * NpcRecordLog.RECORD_SIZE);
+        header.putInt(24, count);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_CRC_OFFSET);
+        header.putInt(HEADER_CRC_OFFSET, (int) crc.getValue());
+
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            ByteBuffer batch = ByteBuffer.allocate(ENTRY_SIZE * 1024);
+            for (int slot : order) {
+                if (!batch.hasRemaining()) {
+                    batch.flip();
+                    while (batch.hasRemaining()) {
+                        out.write(batch);
+                    }
+                    batch.clear();
+                }
+                UUID islandUUID = keys.get(slot);
+                batch.putLong(islandUUID.getMostSignificantBits());
+                batch.putLong(islandUUID.getLeastSignificantBits());
+                batch.putLong(dataStart + (long) slot * NpcRecordLog.RECORD_SIZE);
+            }
+            batch.flip();
+            while (batch.hasRemaining()) {
+                out.write(batch);
+            }
+            out.force(true);
+        }
+        try {
+            Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public synchronized IslandNpcRecord get(UUID islandUUID) {
+        if (closed) {
+            return null;
+        }
+        readTail();
+        if (tail.containsKey(islandUUID)) {
+            return tail.get(islandUUID);
+        }
+
+        int slot = search(islandUUID);
+        if (slot < 0) {
+            return null;
+        }
+        long offset = entries.getLong(slot * ENTRY_SIZE + 16);
+        if (offset < 0 || offset + NpcRecordLog.RECORD_SIZE > baseEnd) {
+            return null;
+        }
+        // 记录自带 CRC 和 UUID，读取时逐条校验，不需要校验整个索引
+        if (!readRecord(offset)) {
+            return null;
+        }
+        if (!NpcRecordLog.isValid(record) || NpcRecordLog.isDelete(record)
+                || !islandUUID.equals(NpcRecordLog.readUUID(record))) {
+            return null;
+        }
+        return NpcRecordLog.decode(islandUUID, record);
+    }
+
+    /**
+     * 关闭日志文件，之后的查询返回 null
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        try {
+            log.close();
+        } catch (IOException ignored) {
+            // 只读通道，关闭失败不影响数据
+        }
+    }
+
+    /**
+     * @return 索引中的岛屿数量（不含之后追加的记录）
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 二分查找岛屿UUID所在的条目
+     * @return 条目序号，不存在时返回 -1
+     */
+    private int search(UUID islandUUID) {
+        long most = islandUUID.getMostSignificantBits();
+        long least = islandUUID.getLeastSignificantBits();
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int position = mid * ENTRY_SIZE;
+            // 与 UUID.compareTo 的顺序一致
+            int cmp = Long.compare(entries.getLong(position), most);
+            if (cmp == 0) {
+                cmp = Long.compare(entries.getLong(position + 8), least);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 从日志中按偏移读取一条记录到 record
+     * @return 是否读满一条记录（日志已被截断或读取失败时返回 false）
+     */
+    private boolean readRecord(long offset) {
+        record.clear();
+        try {
+            while (record.hasRemaining()) {
+                if (log.read(record, offset + record.position()) < 0) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        record.flip();
+        return true;
+    }
+
+    /**
+     * 读取上次查询之后追加到日志的完整记录，跳过校验失败的记录；
+     * 读到文件末尾或写了一半的记录即停止，下次查询时从这里继续
+     */
+    private void readTail() {
+        while (readRecord(tailEnd)) {
+            if (NpcRecordLog.isValid(record)) {
+                UUID islandUUID = NpcRecordLog.readUUID(record);
+                tail.put(islandUUID, NpcRecordLog.isDelete(record) ? null : NpcRecordLog.decode(islandUUID, record));
+            }
+            tailEnd += NpcRecordLog.RECORD_SIZE;
+        }
+    }
+}
@@ -0,0 +1,761 @@
+package com.magicbili.islandnpc.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写入的 NPC 二进制记录日志
+ * 每次变更只追加一条固定长度的记录（每个岛屿一条），不再整体重写 npcdata.yml
+ * 日志增长到一定程度后在后台压缩，只保留每个岛屿的最新记录
+ *
+ * 崩溃安全：
+ * 压缩和全量重写先写临时文件并 fsync，再原子重命名替换，被替换的上一代保留为 npcdata.log.prev；
+ * 文件头带代数和 CRC32，打开时文件头损坏或文件丢失会回退到上一代；
+ * 每条记录带 CRC32，读取时逐块流式校验：校验失败的记录被跳过并隔离到 npcdata.log.corrupt-*，之后的记录照常重放，
+ * 只有末尾写了一半（不足一条记录长度）的部分会被截断
+ *
+ * 每一代日志同时生成按岛屿UUID排序的索引 npcdata.log.idx（见 NpcRecordIndex），
+ * 完整加载完成之前可以通过内存映射直接读取单个岛屿的记录
+ *
+ * 文件头布局（24 字节）：
+ * [0-3] 魔数 [4-7] 格式版本 [8-15] 代数 [16-19] 保留 [20-23] 文件头 CRC32
+ *
+ * 记录布局（256 字节）：
+ * [0] 操作类型 [1] 标志位 [2-17] 岛屿UUID [18-41] x/y/z [42-49] yaw/pitch
+ * [50-113] 世界名 [114-177] NPC ID [178-241] 对话框ID [242-251] 保留 [252-255] CRC32
+ *
+ * @author magicbili
+ */
+public class NpcRecordLog implements NpcStorage {
+
+    private static final int MAGIC = 0x494E5043; // "INPC"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+    private static final int HEADER_CRC_OFFSET = HEADER_SIZE - 4;
+    // 版本 1 的文件头只有魔数和版本号，打开时升级为当前格式
+    private static final int LEGACY_FORMAT_VERSION = 1;
+    private static final int LEGACY_HEADER_SIZE = 8;
+
+    static final int RECORD_SIZE = 256;
+    private static final int STRING_FIELD_SIZE = 64;
+    // 字符串字段 UTF-8 编码后的最大字节数（第一个字节保存长度）
+    static final int MAX_STRING_BYTES = STRING_FIELD_SIZE - 1;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private static final int FLAG_HIDDEN = 1;
+    private static final int FLAG_SLIME_WORLD = 1 << 1;
+    private static final int FLAG_SLIME_KNOWN = 1 << 2;
+    private static final int FLAG_HAS_LOCATION = 1 << 3;
+
+    private static final int OFFSET_UUID = 2;
+    private static final int OFFSET_X = 18;
+    private static final int OFFSET_Y = 26;
+    private static final int OFFSET_Z = 34;
+    private static final int OFFSET_YAW = 42;
+    private static final int OFFSET_PITCH = 46;
+    private static final int OFFSET_WORLD = 50;
+    private static final int OFFSET_NPC_ID = OFFSET_WORLD + STRING_FIELD_SIZE;
+    private static final int OFFSET_DIALOG_ID = OFFSET_NPC_ID + STRING_FIELD_SIZE;
+
+    // 记录数超过存活岛屿数的倍数时触发压缩
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    private static final int COMPACT_RATIO = 2;
+
+    // Windows 上被映射的文件无法替换或截断，不使用内存映射索引
+    private static final boolean MAPPING_SUPPORTED = File.separatorChar != '\\';
+
+    private final Logger logger;
+    private final Path path;
+    private final Path prevPath;
+    private final Path indexPath;
+    private final Queue<NpcDataSnapshot> pending = new ConcurrentLinkedQueue<>();
+    private final Set<UUID> liveKeys = new HashSet<>();
+    private FileChannel channel;
+    private long recordCount;
+    private long generation;
+    private int dataStart = HEADER_SIZE;
+    private volatile long writtenVersion;
+
+    public NpcRecordLog(Logger logger, File file) {
+        this.logger = logger;
+        this.path = file.toPath();
+        this.prevPath = path.resolveSibling(path.getFileName() + ".prev");
+        this.indexPath = path.resolveSibling(path.getFileName() + ".idx");
+    }
+
+    @Override
+    public String getName() {
+        return path.getFileName().toString();
+    }
+
+    /**
+     * 日志文件是否已存在
+     */
+    @Override
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * 打开日志并将所有记录重放到 records
+     * 校验失败的记录被跳过并隔离，之后压缩日志把它们移除（原文件保留为上一代）；
+     * 末尾写了一半的记录（写入时崩溃）会被截断
+     * 文件丢失或文件头损坏时回退到上一代 npcdata.log.prev
+     * @param records 重放目标，按岛屿UUID保存最新记录
+     * @return 重放的记录数
+     */
+    @Override
+    public synchronized long open(Map<UUID, IslandNpcRecord> records) throws IOException {
+        close();
+        liveKeys.clear();
+        recordCount = 0;
+
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            if (!Files.exists(prevPath)) {
+                // 全新的日志
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                generation = 1;
+                dataStart = HEADER_SIZE;
+                writeHeader(channel, generation);
+                channel.force(true);
+                return 0;
+            }
+            logger.warning(getName() + " 不存在或为空，从上一代 " + prevPath.getFileName() + " 恢复");
+            Files.copy(prevPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int version = readHeader(channel);
+        if (version < 0) {
+            channel.close();
+            channel = null;
+            if (!Files.exists(prevPath)) {
+                throw new IOException(getName() + " 文件头校验失败，且没有可用的上一代文件");
+            }
+            Path damaged = preserveDamaged();
+            logger.warning(getName() + " 文件头校验失败（已保存为 " + damaged.getFileName()
+                + "），从上一代 " + prevPath.getFileName() + " 恢复");
+            Files.copy(prevPath, path, StandardCopyOption.REPLACE_EXISTING);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            version = readHeader(channel);
+            if (version < 0) {
+                throw new IOException(prevPath.getFileName() + " 文件头同样校验失败");
+            }
+        }
+
+        List<ByteBuffer> corrupt = new ArrayList<>();
+        long validEnd = replay(channel, (islandUUID, record) -> {
+            recordCount++;
+            if (record.get(0) == OP_DELETE) {
+                liveKeys.remove(islandUUID);
+                records.remove(islandUUID);
+            } else {
+                liveKeys.add(islandUUID);
+                records.put(islandUUID, decode(islandUUID, record));
+            }
+        }, corrupt);
+
+        if (!corrupt.isEmpty()) {
+            Path quarantined = quarantine(corrupt);
+            logger.warning(getName() + " 中有 " + corrupt.size() + " 条记录校验失败，已跳过并隔离到 "
+                + quarantined.getFileName() + "，其余记录已正常读取");
+        }
+        if (validEnd < channel.size()) {
+            // 只有不足一条记录长度的末尾部分，是写入时中断留下的
+            logger.warning(getName() + " 末尾存在 " + (channel.size() - validEnd) + " 字节的不完整记录，已截断");
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+        channel.position(channel.size());
+
+        if (version == LEGACY_FORMAT_VERSION || !corrupt.isEmpty()) {
+            // 升级为带校验的文件头 / 移除已隔离的损坏记录，避免每次打开重复隔离
+            compact();
+        }
+        return recordCount;
+    }
+
+    /**
+     * 提交一个待写入的快照（由 flush() 按提交顺序写入磁盘）
+     * @param snapshot 主线程发布的不可变快照
+     */
+    @Override
+    public void enqueue(NpcDataSnapshot snapshot) {
+        pending.add(snapshot);
+    }
+
+    /**
+     * @return 是否有尚未写入磁盘的快照
+     */
+    @Override
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * @return 最后一个写入磁盘的快照版本号
+     */
+    @Override
+    public long getWrittenVersion() {
+        return writtenVersion;
+    }
+
+    /**
+     * 将等待中的快照编码并写入磁盘，每个快照一次写入
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        boolean wrote = false;
+        if (channel == null) {
+            return;
+        }
+        NpcDataSnapshot snapshot;
+        while ((snapshot = pending.peek()) != null) {
+            ByteBuffer batch = ByteBuffer.allocate(snapshot.size() * RECORD_SIZE);
+            for (Map.Entry<UUID, IslandNpcRecord> entry : snapshot.getChanges().entrySet()) {
+                batch.put(entry.getValue() != null ? encode(entry.getValue()) : encodeDelete(entry.getKey()));
+            }
+            batch.flip();
+            long start = channel.position();
+            try {
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+            } catch (IOException e) {
+                // 丢弃写了一半的快照，避免不完整记录挡住之后追加的记录
+                channel.truncate(start);
+                channel.position(start);
+                throw e;
+            }
+
+            // 写入成功后才移出队列，失败时下次重试
+            pending.poll();
+            for (Map.Entry<UUID, IslandNpcRecord> entry : snapshot.getChanges().entrySet()) {
+                if (entry.getValue() != null) {
+                    liveKeys.add(entry.getKey());
+                } else {
+                    liveKeys.remove(entry.getKey());
+                }
+            }
+            recordCount += snapshot.size();
+            writtenVersion = snapshot.getVersion();
+            wrote = true;
+        }
+        if (wrote) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * 检查日志是否需要压缩
+     */
+    @Override
+    public synchronized boolean needsCompaction() {
+        return recordCount > COMPACT_MIN_RECORDS && recordCount > (long) liveKeys.size() * COMPACT_RATIO;
+    }
+
+    /**
+     * 压缩日志：只保留每个岛屿的最新记录，丢弃已删除的岛屿
+     * 可在异步线程中调用
+     */
+    @Override
+    public synchronized void compact() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        Map<UUID, ByteBuffer> latest = new LinkedHashMap<>();
+        replay(channel, (islandUUID, record) -> {
+            if (record.get(0) == OP_DELETE) {
+                latest.remove(islandUUID);
+            } else {
+                latest.put(islandUUID, copyOf(record));
+            }
+        }, null);
+
+        long before = recordCount;
+        writeGeneration(latest.values());
+        logger.info(getName() + " 压缩完成: " + before + " -> " + recordCount + " 条记录");
+    }
+
+    /**
+     * 用完整数据重写日志（用于数据迁移和切换存储类型）
+     * @param records 所有岛屿记录
+     * @param version records 已包含的最后一个快照版本号
+     */
+    @Override
+    public synchronized void rewrite(Collection<IslandNpcRecord> records, long version) throws IOException {
+        List<ByteBuffer> encoded = new ArrayList<>(records.size());
+        for (IslandNpcRecord record : records) {
+            encoded.add(encode(record));
+        }
+        writeGeneration(encoded);
+        // 旧快照中的记录比重写的数据旧，重写后再追加会还原已修改的岛屿或恢复已删除的岛屿；
+        // 更新的快照（例如导入旧数据期间主线程发布的变更）保留，之后追加到新一代日志
+        discardPending(version);
+    }
+
+    /**
+     * 丢弃版本号不大于 version 的等待中快照
+     */
+    private void discardPending(long version) {
+        pending.removeIf(snapshot -> snapshot.getVersion() <= version);
+        if (version > writtenVersion) {
+            writtenVersion = version;
+        }
+    }
+
+    /**
+     * 关闭日志文件
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * 关闭并删除日志文件及其上一代（用于移除不再使用的分片）
+     */
+    public synchronized void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(prevPath);
+        Files.deleteIfExists(indexPath);
+    }
+
+    /**
+     * 打开日志的内存映射索引，不需要先调用 open()，也不会等待正在进行的 open()
+     * @return 索引，索引不存在、已过期或当前平台不支持时返回 null
+     */
+    @Override
+    public NpcRecordLookup openLookup() throws IOException {
+        if (!MAPPING_SUPPORTED || !Files.exists(indexPath) || !Files.exists(path)) {
+            return null;
+        }
+        long logGeneration;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            logGeneration = readGeneration(in);
+        }
+        if (logGeneration < 0) {
+            return null;
+        }
+        return NpcRecordIndex.open(path, indexPath, logGeneration);
+    }
+
+    /**
+     * @return 当前日志文件的代数（每次压缩或重写加一）
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 写入新一代日志文件（临时文件 + fsync + 原子替换），并切换到新文件继续追加
+     * 被替换的文件保留为 npcdata.log.prev
+     */
+    private void writeGeneration(Iterable<ByteBuffer> records) throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        long nextGeneration = generation + 1;
+        long written = 0;
+        Set<UUID> keys = new HashSet<>();
+        List<UUID> order = new ArrayList<>();
+        try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(out, nextGeneration);
+            for (ByteBuffer record : records) {
+                ByteBuffer buffer = record.duplicate();
+                buffer.rewind();
+                UUID islandUUID = readUUID(buffer);
+                keys.add(islandUUID);
+                order.add(islandUUID);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                written++;
+            }
+            out.force(true);
+        }
+
+        if (channel != null) {
+            channel.force(true);
+            channel.close();
+            channel = null;
+        }
+
+        // 保留当前文件作为上一代（优先使用硬链接，不复制数据）
+        if (Files.exists(path)) {
+            Files.deleteIfExists(prevPath);
+            try {
+                Files.createLink(prevPath, path);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(path, prevPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        try {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory();
+
+        try {
+            NpcRecordIndex.write(indexPath, order, HEADER_SIZE, nextGeneration);
+        } catch (IOException e) {
+            // 索引只用于加速启动，失败时删除旧索引即可（代数不一致的索引也不会被使用）
+            logger.warning("无法写入 " + indexPath.getFileName() + ": " + e.getMessage());
+            Files.deleteIfExists(indexPath);
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        generation = nextGeneration;
+        dataStart = HEADER_SIZE;
+        liveKeys.clear();
+        liveKeys.addAll(keys);
+        recordCount = written;
+    }
+
+    /**
+     * 同步目录项，确保重命名在断电后仍然有效（部分平台不支持，忽略）
+     */
+    private void syncDirectory() {
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir == null) {
+            return;
+        }
+        try (FileChannel dirChannel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            dirChannel.force(true);
+        } catch (IOException e) {
+            // Windows 等平台无法打开目录
+        }
+    }
+
+    /**
+     * 复制一份损坏的日志文件以便排查
+     * @return 副本路径
+     */
+    private Path preserveDamaged() throws IOException {
+        Path damaged = path.resolveSibling(path.getFileName() + ".corrupt-" + System.currentTimeMillis());
+        Files.copy(path, damaged, StandardCopyOption.REPLACE_EXISTING);
+        return damaged;
+    }
+
+    /**
+     * 把校验失败的记录原样写入 npcdata.log.corrupt-* 以便排查
+     * @return 隔离文件路径
+     */
+    private Path quarantine(List<ByteBuffer> records) throws IOException {
+        Path target = path.resolveSibling(path.getFileName() + ".corrupt-" + System.currentTimeMillis());
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (ByteBuffer record : records) {
+                ByteBuffer buffer = record.duplicate();
+                buffer.rewind();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            out.force(true);
+        }
+        return target;
+    }
+
+    private interface RecordVisitor {
+        void visit(UUID islandUUID, ByteBuffer record);
+    }
+
+    /**
+     * 顺序读取所有记录，校验失败的记录跳过，不影响之后的记录
+     * @param corrupt 收集校验失败的记录副本，为 null 时直接丢弃
+     * @return 最后一条完整记录的结束位置（之后只可能是写了一半的记录）
+     */
+    private long replay(FileChannel source, RecordVisitor visitor, List<ByteBuffer> corrupt) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE * 1024);
+        long position = dataStart;
+        long size = source.size();
+
+        while (position + RECORD_SIZE <= size) {
+            chunk.clear();
+            int limit = (int) Math.min(chunk.capacity(), (size - position) / RECORD_SIZE * RECORD_SIZE);
+            chunk.limit(limit);
+            while (chunk.hasRemaining()) {
+                if (source.read(chunk, position + chunk.position()) < 0) {
+                    break;
+                }
+            }
+            chunk.flip();
+
+            while (chunk.remaining() >= RECORD_SIZE) {
+                ByteBuffer record = chunk.slice();
+                record.limit(RECORD_SIZE);
+                if (isValid(record)) {
+                    visitor.visit(readUUID(record), record);
+                } else if (corrupt != null) {
+                    corrupt.add(copyOf(record));
+                }
+                chunk.position(chunk.position() + RECORD_SIZE);
+                position += RECORD_SIZE;
+            }
+        }
+        return position;
+    }
+
+    private void writeHeader(FileChannel out, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, MAGIC);
+        header.putInt(4, FORMAT_VERSION);
+        header.putLong(8, generation);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_CRC_OFFSET);
+        header.putInt(HEADER_CRC_OFFSET, (int) crc.getValue());
+        out.write(header, 0);
+        out.position(HEADER_SIZE);
+    }
+
+    /**
+     * 读取当前格式文件头中的代数（不修改日志状态）
+     * @return 代数，文件头无效或为旧格式时返回 -1
+     */
+    private static long readGeneration(FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && in.read(header, header.position()) > 0) {
+            // 读满文件头
+        }
+        if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_CRC_OFFSET);
+        if (header.getInt(HEADER_CRC_OFFSET) != (int) crc.getValue()) {
+            return -1;
+        }
+        return header.getLong(8);
+    }
+
+    /**
+     * 读取并校验文件头，设置代数和数据起始位置
+     * @return 格式版本，文件头无效时返回 -1
+     */
+    private int readHeader(FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && in.read(header, header.position()) > 0) {
+            // 读满文件头
+        }
+        if (header.position() < LEGACY_HEADER_SIZE || header.getInt(0) != MAGIC) {
+            return -1;
+        }
+
+        int version = header.getInt(4);
+        if (version == LEGACY_FORMAT_VERSION) {
+            generation = 0;
+            dataStart = LEGACY_HEADER_SIZE;
+            return version;
+        }
+        if (version != FORMAT_VERSION) {
+            throw new IOException("不支持的 " + getName() + " 版本: " + version);
+        }
+        if (header.position() < HEADER_SIZE) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_CRC_OFFSET);
+        if (header.getInt(HEADER_CRC_OFFSET) != (int) crc.getValue()) {
+            return -1;
+        }
+        generation = header.getLong(8);
+        dataStart = HEADER_SIZE;
+        return version;
+    }
+
+    /**
+     * 编码一条记录为字节数组（用于保存在世界或岛屿数据中的记录）
+     */
+    static byte[] toBytes(IslandNpcRecord data) {
+        ByteBuffer encoded = encode(data);
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 解码 toBytes() 生成的记录
+     * @return 记录，长度或校验不正确时返回 null
+     */
+    static IslandNpcRecord fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != RECORD_SIZE) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.wrap(bytes);
+        if (!isValid(record) || isDelete(record)) {
+            return null;
+        }
+        return decode(readUUID(record), record);
+    }
+
+    /**
+     * 检查记录能否完整编码（存储记录之前调用）
+     * 世界名、NPC ID 和对话框ID 超过 MAX_STRING_BYTES 字节时拒绝，不截断保存
+     * @throws IllegalArgumentException 字段过长
+     */
+    public static void checkEncodable(IslandNpcRecord data) {
+        if (data.hasLocation()) {
+            checkString("世界名", data.getWorldName());
+        }
+        checkString("NPC ID", data.getNpcId());
+        checkString("对话框ID", data.getDialogId());
+    }
+
+    private static void checkString(String field, String value) {
+        if (value != null && value.getBytes(StandardCharsets.UTF_8).length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException(field + "超过 " + MAX_STRING_BYTES + " 字节，无法保存: " + value);
+        }
+    }
+
+    /**
+     * 编码一条记录
+     * @throws IllegalArgumentException 字符串字段过长（见 checkEncodable）
+     */
+    static ByteBuffer encode(IslandNpcRecord data) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        int flags = 0;
+        if (data.isHidden()) {
+            flags |= FLAG_HIDDEN;
+        }
+        if (data.getSlimeWorld() != null) {
+            flags |= FLAG_SLIME_KNOWN;
+            if (data.getSlimeWorld()) {
+                flags |= FLAG_SLIME_WORLD;
+            }
+        }
+        if (data.hasLocation()) {
+            flags |= FLAG_HAS_LOCATION;
+            record.putDouble(OFFSET_X, data.getX());
+            record.putDouble(OFFSET_Y, data.getY());
+            record.putDouble(OFFSET_Z, data.getZ());
+            record.putFloat(OFFSET_YAW, data.getYaw());
+            record.putFloat(OFFSET_PITCH, data.getPitch());
+            putString(record, OFFSET_WORLD, data.getWorldName());
+        }
+        putString(record, OFFSET_NPC_ID, data.getNpcId());
+        putString(record, OFFSET_DIALOG_ID, data.getDialogId());
+
+        record.put(0, OP_PUT);
+        record.put(1, (byte) flags);
+        record.putLong(OFFSET_UUID, data.getIslandUUID().getMostSignificantBits());
+        record.putLong(OFFSET_UUID + 8, data.getIslandUUID().getLeastSignificantBits());
+        return seal(record);
+    }
+
+    private static ByteBuffer encodeDelete(UUID islandUUID) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(0, OP_DELETE);
+        record.putLong(OFFSET_UUID, islandUUID.getMostSignificantBits());
+        record.putLong(OFFSET_UUID + 8, islandUUID.getLeastSignificantBits());
+        return seal(record);
+    }
+
+    static IslandNpcRecord decode(UUID islandUUID, ByteBuffer record) {
+        int flags = record.get(1);
+        boolean hasLocation = (flags & FLAG_HAS_LOCATION) != 0;
+        Boolean slimeWorld = (flags & FLAG_SLIME_KNOWN) != 0 ? (flags & FLAG_SLIME_WORLD) != 0 : null;
+        return new IslandNpcRecord(
+            islandUUID,
+            hasLocation ? getString(record, OFFSET_WORLD) : null,
+            record.getDouble(OFFSET_X),
+            record.getDouble(OFFSET_Y),
+            record.getDouble(OFFSET_Z),
+            record.getFloat(OFFSET_YAW),
+            record.getFloat(OFFSET_PITCH),
+            (flags & FLAG_HIDDEN) != 0,
+            slimeWorld,
+            getString(record, OFFSET_NPC_ID),
+            getString(record, OFFSET_DIALOG_ID)
+        );
+    }
+
+    private static ByteBuffer seal(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, CRC_OFFSET);
+        record.putInt(CRC_OFFSET, (int) crc.getValue());
+        record.rewind();
+        return record;
+    }
+
+    static boolean isValid(ByteBuffer record) {
+        byte op = record.get(0);
+        if (op != OP_PUT && op != OP_DELETE) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer body = record.duplicate();
+        body.position(0).limit(CRC_OFFSET);
+        crc.update(body);
+        return (int) crc.getValue() == record.getInt(CRC_OFFSET);
+    }
+
+    private static void putString(ByteBuffer record, int offset, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // 截断会切开多字节字符并让记录指向不存在的世界，调用方应先用 checkEncodable 拒绝
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("字段超过 " + MAX_STRING_BYTES + " 字节，无法保存: " + value);
+        }
+        record.put(offset, (byte) bytes.length);
+        record.put(offset + 1, bytes, 0, bytes.length);
+    }
+
+    private static String getString(ByteBuffer record, int offset) {
+        int length = record.get(offset) & 0xFF;
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(offset + 1, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static UUID readUUID(ByteBuffer record) {
+        return new UUID(record.getLong(OFFSET_UUID), record.getLong(OFFSET_UUID + 8));
+    }
+
+    static boolean isDelete(ByteBuffer record) {
+        return record.get(0) == OP_DELETE;
+    }
+
+    private static ByteBuffer copyOf(ByteBuffer record) {
+        ByteBuffer copy = ByteBuffer.allocate(RECORD_SIZE);
+        ByteBuffer source = record.duplicate();
+        source.position(0).limit(RECORD_SIZE);
+        copy.put(source).flip();
+        return copy;
+    }
+}
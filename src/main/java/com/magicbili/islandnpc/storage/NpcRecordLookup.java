@@ -0,0 +1,25 @@
+package com.magicbili.islandnpc.storage;
+
+import java.util.UUID;
+
+/**
+ * 按岛屿UUID读取单条记录的只读查询
+ * 用于NPC数据完整加载完成之前，直接从磁盘读取需要的岛屿
+ *
+ * @author magicbili
+ */
+public interface NpcRecordLookup {
+
+    /**
+     * 读取岛屿的记录
+     * @param islandUUID 岛屿UUID
+     * @return 记录，不存在或无法读取时返回 null
+     */
+    IslandNpcRecord get(UUID islandUUID);
+
+    /**
+     * 释放查询打开的文件（完整加载完成后调用），之后不再查询
+     */
+    default void close() {
+    }
+}
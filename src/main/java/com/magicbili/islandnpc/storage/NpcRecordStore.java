@@ -0,0 +1,188 @@
+package com.magicbili.islandnpc.storage;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 岛屿NPC记录的内存存储（按岛屿UUID索引）
+ * 同时维护 世界名 -> 岛屿集合 的二级索引，世界加载时只需处理该世界中的岛屿，
+ * 以及 世界名 -> 区块 -> 岛屿集合 的索引，区块加载时只需处理该区块中的岛屿
+ * 只在主线程访问
+ *
+ * @author magicbili
+ */
+public class NpcRecordStore {
+
+    private Map<UUID, IslandNpcRecord> records = new HashMap<>();
+    private Map<String, Set<UUID>> islandsByWorld = new HashMap<>();
+    private Map<String, Map<Long, Set<UUID>>> islandsByChunk = new HashMap<>();
+
+    /**
+     * 用后台线程构建好的存储替换当前内容
+     * 当前已有的记录（加载期间新写入的）会覆盖加载结果，加载期间删除的岛屿从加载结果中移除
+     * @param loaded 已构建完成、不再被其他线程使用的存储
+     * @param removedDuringLoad 加载期间删除的岛屿
+     */
+    public void replaceWith(NpcRecordStore loaded, Collection<UUID> removedDuringLoad) {
+        for (UUID islandUUID : removedDuringLoad) {
+            loaded.remove(islandUUID);
+        }
+        loaded.putAll(records.values());
+        records = loaded.records;
+        islandsByWorld = loaded.islandsByWorld;
+        islandsByChunk = loaded.islandsByChunk;
+        loaded.records = new HashMap<>();
+        loaded.islandsByWorld = new HashMap<>();
+        loaded.islandsByChunk = new HashMap<>();
+    }
+
+    /**
+     * 获取岛屿的记录
+     * @param islandUUID 岛屿UUID
+     * @return 记录，如果不存在返回 null
+     */
+    public IslandNpcRecord get(UUID islandUUID) {
+        return records.get(islandUUID);
+    }
+
+    public boolean contains(UUID islandUUID) {
+        return records.containsKey(islandUUID);
+    }
+
+    /**
+     * 保存记录（覆盖旧记录）
+     * @return 旧记录，如果不存在返回 null
+     */
+    public IslandNpcRecord put(IslandNpcRecord record) {
+        IslandNpcRecord previous = records.put(record.getIslandUUID(), record);
+        String oldWorld = previous != null ? previous.getWorldName() : null;
+        String newWorld = record.getWorldName();
+        if (oldWorld != null && !oldWorld.equals(newWorld)) {
+            unindexWorld(oldWorld, record.getIslandUUID());
+        }
+        if (newWorld != null && !newWorld.equals(oldWorld)) {
+            islandsByWorld.computeIfAbsent(newWorld, k -> new HashSet<>()).add(record.getIslandUUID());
+        }
+        if (previous != null && previous.hasLocation()) {
+            unindexChunk(previous);
+        }
+        if (record.hasLocation()) {
+            islandsByChunk.computeIfAbsent(newWorld, k -> new HashMap<>())
+                .computeIfAbsent(chunkKey(record.getChunkX(), record.getChunkZ()), k -> new HashSet<>())
+                .add(record.getIslandUUID());
+        }
+        return previous;
+    }
+
+    /**
+     * 批量保存记录
+     */
+    public void putAll(Collection<IslandNpcRecord> newRecords) {
+        for (IslandNpcRecord record : newRecords) {
+            put(record);
+        }
+    }
+
+    /**
+     * 删除记录
+     * @return 被删除的记录，如果不存在返回 null
+     */
+    public IslandNpcRecord remove(UUID islandUUID) {
+        IslandNpcRecord previous = records.remove(islandUUID);
+        if (previous != null && previous.getWorldName() != null) {
+            unindexWorld(previous.getWorldName(), islandUUID);
+            unindexChunk(previous);
+        }
+        return previous;
+    }
+
+    /**
+     * 获取指定世界中的所有岛屿UUID（只读视图）
+     * @param worldName 世界名称
+     * @return 岛屿UUID集合，没有时返回空集合
+     */
+    public Set<UUID> getIslandsInWorld(String worldName) {
+        Set<UUID> islands = islandsByWorld.get(worldName);
+        return islands != null ? Collections.unmodifiableSet(islands) : Collections.emptySet();
+    }
+
+    /**
+     * 获取指定区块中的所有岛屿UUID（只读视图）
+     * @param worldName 世界名称
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @return 岛屿UUID集合，没有时返回空集合
+     */
+    public Set<UUID> getIslandsInChunk(String worldName, int chunkX, int chunkZ) {
+        Map<Long, Set<UUID>> chunks = islandsByChunk.get(worldName);
+        if (chunks == null) {
+            return Collections.emptySet();
+        }
+        Set<UUID> islands = chunks.get(chunkKey(chunkX, chunkZ));
+        return islands != null ? Collections.unmodifiableSet(islands) : Collections.emptySet();
+    }
+
+    /**
+     * 获取所有记录（只读视图）
+     */
+    public Collection<IslandNpcRecord> getAll() {
+        return Collections.unmodifiableCollection(records.values());
+    }
+
+    /**
+     * 获取所有岛屿UUID（只读视图）
+     */
+    public Set<UUID> getIslandUUIDs() {
+        return Collections.unmodifiableSet(records.keySet());
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    public void clear() {
+        records.clear();
+        islandsByWorld.clear();
+        islandsByChunk.clear();
+    }
+
+    /**
+     * 区块坐标打包为 long，高 32 位为 X，低 32 位为 Z
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private void unindexWorld(String worldName, UUID islandUUID) {
+        Set<UUID> islands = islandsByWorld.get(worldName);
+        if (islands != null) {
+            islands.remove(islandUUID);
+            if (islands.isEmpty()) {
+                islandsByWorld.remove(worldName);
+            }
+        }
+    }
+
+    private void unindexChunk(IslandNpcRecord record) {
+        Map<Long, Set<UUID>> chunks = islandsByChunk.get(record.getWorldName());
+        if (chunks == null) {
+            return;
+        }
+        long key = chunkKey(record.getChunkX(), record.getChunkZ());
+        Set<UUID> islands = chunks.get(key);
+        if (islands != null) {
+            islands.remove(record.getIslandUUID());
+            if (islands.isEmpty()) {
+                chunks.remove(key);
+                if (chunks.isEmpty()) {
+                    islandsByChunk.remove(record.getWorldName());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.magicbili.islandnpc.storage;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * NPC 数据存储后端接口
+ * 内存中的 NpcRecordStore 是唯一的读取来源，存储后端只负责启动时加载和持久化变更
+ * 变更以 NpcDataSnapshot 的形式提交，由刷盘线程调用 flush() 写入
+ *
+ * 除 enqueue()/hasPending()/getWrittenVersion() 外，其余方法只在加载线程或刷盘线程中调用
+ *
+ * @author magicbili
+ */
+public interface NpcStorage {
+
+    /**
+     * 获取存储名称（用于日志，例如 "npcdata.log"）
+     */
+    String getName();
+
+    /**
+     * 存储是否已有数据（用于判断是否需要从其他存储导入）
+     */
+    boolean exists();
+
+    /**
+     * 打开存储并读取所有记录
+     * @param records 读取目标，按岛屿UUID保存最新记录
+     * @return 读取的记录数
+     */
+    long open(Map<UUID, IslandNpcRecord> records) throws IOException;
+
+    /**
+     * 打开只读的按岛屿UUID查询，用于完整加载完成之前读取单个记录
+     * 不需要先调用 open()，可在 open() 进行期间于其他线程调用
+     * @return 查询，存储不支持或暂时不可用时返回 null
+     */
+    default NpcRecordLookup openLookup() throws IOException {
+        return null;
+    }
+
+    /**
+     * 提交一个待写入的快照（任意线程，不阻塞）
+     * @param snapshot 主线程发布的不可变快照
+     */
+    void enqueue(NpcDataSnapshot snapshot);
+
+    /**
+     * @return 是否有尚未写入的快照
+     */
+    boolean hasPending();
+
+    /**
+     * @return 最后一个写入成功的快照版本号
+     */
+    long getWrittenVersion();
+
+    /**
+     * 按提交顺序写入等待中的快照，失败的快照保留到下次重试
+     */
+    void flush() throws IOException;
+
+    /**
+     * 检查存储是否需要整理（例如压缩日志）
+     */
+    boolean needsCompaction();
+
+    /**
+     * 整理存储，不改变数据内容
+     */
+    void compact() throws IOException;
+
+    /**
+     * 用完整数据替换存储内容（用于数据迁移和切换存储类型）
+     * 等待中版本号不大于 version 的快照已包含在 records 中，重写成功后被丢弃，
+     * 不会在重写后再次写入而覆盖较新的数据；之后的快照在重写后照常写入
+     * @param records 所有岛屿记录
+     * @param version records 已包含的最后一个快照版本号，数据不来自内存中的最新状态（例如导入旧数据）时为 0
+     */
+    void rewrite(Collection<IslandNpcRecord> records, long version) throws IOException;
+
+    /**
+     * 关闭存储
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,45 @@
+package com.magicbili.islandnpc.storage;
+
+import com.magicbili.islandnpc.IslandNpcPlugin;
+
+import java.io.File;
+
+/**
+ * NPC数据存储工厂类
+ * 根据配置创建存储后端
+ *
+ * @author magicbili
+ */
+public class NpcStorageFactory {
+
+    /**
+     * 创建NPC数据存储
+     * @param plugin 插件实例
+     * @return 存储后端，未知类型时使用默认的 npcdata.log
+     */
+    public static NpcStorage createStorage(IslandNpcPlugin plugin) {
+        String type = plugin.getConfigManager().getStorageType();
+        File dataFolder = plugin.getDataFolder();
+
+        if ("SQLITE".equalsIgnoreCase(type)) {
+            plugin.getLogger().info("NPC数据存储: SQLite (npcdata.db)");
+            return new SqliteNpcStorage(plugin, new File(dataFolder, "npcdata.db"));
+        }
+        if ("SHARDED".equalsIgnoreCase(type)) {
+            int shards = plugin.getConfigManager().getStorageShards();
+            plugin.getLogger().info("NPC数据存储: 分片日志 (npcdata/，" + shards + " 个分片)");
+            return new ShardedNpcStorage(plugin, new File(dataFolder, "npcdata"), shards);
+        }
+        if (!"LOG".equalsIgnoreCase(type)) {
+            plugin.getLogger().warning("未知的存储类型: " + type + "，使用默认的 LOG");
+        }
+        return createRecordLog(plugin);
+    }
+
+    /**
+     * 创建默认的二进制日志存储（也用于从日志导入到其他存储）
+     */
+    public static NpcRecordLog createRecordLog(IslandNpcPlugin plugin) {
+        return new NpcRecordLog(plugin.getLogger(), new File(plugin.getDataFolder(), "npcdata.log"));
+    }
+}
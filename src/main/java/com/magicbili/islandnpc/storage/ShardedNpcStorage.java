@@ -0,0 +1,383 @@
+package com.magicbili.islandnpc.storage;
+
+import com.magicbili.islandnpc.IslandNpcPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分片的 NPC 数据存储（npcdata/shard-XX.log）
+ * 按岛屿UUID前缀把岛屿分到固定数量的分片，每个分片是一个独立的 NpcRecordLog，
+ * 有各自的待写队列和压缩时机；加载、刷盘、压缩和重写在工作线程池中并行执行，
+ * 耗时随 CPU 核心数而不是岛屿总数增长
+ *
+ * 分片数量变化后，打开时发现记录不在其应属的分片中，会按新的分片数重新分布所有记录
+ *
+ * @author magicbili
+ */
+public class ShardedNpcStorage implements NpcStorage {
+
+    private static final String SHARD_PREFIX = "shard-";
+    private static final String SHARD_SUFFIX = ".log";
+
+    private final IslandNpcPlugin plugin;
+    private final File directory;
+    private final NpcRecordLog[] shards;
+    private ExecutorService executor;
+    private volatile long enqueuedVersion;
+    private volatile long writtenVersion;
+
+    /**
+     * @param directory 分片目录
+     * @param shardCount 分片数量
+     */
+    public ShardedNpcStorage(IslandNpcPlugin plugin, File directory, int shardCount) {
+        this.plugin = plugin;
+        this.directory = directory;
+        this.shards = new NpcRecordLog[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new NpcRecordLog(plugin.getLogger(), shardFile(i));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return directory.getName() + "/";
+    }
+
+    @Override
+    public boolean exists() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SHARD_PREFIX) && name.endsWith(SHARD_SUFFIX));
+        return files != null && files.length > 0;
+    }
+
+    @Override
+    public synchronized long open(Map<UUID, IslandNpcRecord> records) throws IOException {
+        close();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录 " + directory);
+        }
+        AtomicInteger threadId = new AtomicInteger();
+        int threads = Math.min(shards.length, Runtime.getRuntime().availableProcessors());
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "IslandNpc-Storage-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // 分片数量减少后遗留的分片文件也要读取，之后重新分布
+        List<NpcRecordLog> sources = new ArrayList<>(List.of(shards));
+        List<NpcRecordLog> orphans = findOrphanShards();
+        sources.addAll(orphans);
+
+        List<Callable<Map<UUID, IslandNpcRecord>>> tasks = new ArrayList<>();
+        long[] counts = new long[sources.size()];
+        for (int i = 0; i < sources.size(); i++) {
+            NpcRecordLog shard = sources.get(i);
+            int index = i;
+            tasks.add(() -> {
+                Map<UUID, IslandNpcRecord> loaded = new HashMap<>();
+                counts[index] = shard.open(loaded);
+                return loaded;
+            });
+        }
+        List<Map<UUID, IslandNpcRecord>> results = invokeAll(tasks);
+
+        // 同一岛屿同时出现在多个分片时，以其应属分片中的记录为准
+        boolean misplaced = !orphans.isEmpty();
+        long total = 0;
+        List<IslandNpcRecord> strays = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            for (IslandNpcRecord record : results.get(i).values()) {
+                if (i < shards.length && shardOf(record.getIslandUUID()) == i) {
+                    records.put(record.getIslandUUID(), record);
+                } else {
+                    strays.add(record);
+                }
+            }
+            total += counts[i];
+        }
+        for (IslandNpcRecord record : strays) {
+            records.putIfAbsent(record.getIslandUUID(), record);
+            misplaced = true;
+        }
+
+        if (misplaced) {
+            plugin.getLogger().info("NPC数据分片数量已变化，正在重新分布 " + records.size() + " 个岛屿到 "
+                + shards.length + " 个分片");
+            rewrite(records.values(), 0);
+            for (NpcRecordLog orphan : orphans) {
+                orphan.delete();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 每个分片各自的内存映射索引，按岛屿所属分片查询
+     */
+    @Override
+    public NpcRecordLookup openLookup() throws IOException {
+        NpcRecordLookup[] lookups = new NpcRecordLookup[shards.length];
+        boolean any = false;
+        for (int i = 0; i < shards.length; i++) {
+            lookups[i] = shards[i].openLookup();
+            any |= lookups[i] != null;
+        }
+        if (!any) {
+            return null;
+        }
+        return new NpcRecordLookup() {
+            @Override
+            public IslandNpcRecord get(UUID islandUUID) {
+                NpcRecordLookup lookup = lookups[shardOf(islandUUID)];
+                return lookup != null ? lookup.get(islandUUID) : null;
+            }
+
+            @Override
+            public void close() {
+                for (NpcRecordLookup lookup : lookups) {
+                    if (lookup != null) {
+                        lookup.close();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * 按分片拆分快照，每个分片只排队属于自己的变更
+     */
+    @Override
+    public void enqueue(NpcDataSnapshot snapshot) {
+        List<Map<UUID, IslandNpcRecord>> split = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            split.add(null);
+        }
+        for (Map.Entry<UUID, IslandNpcRecord> entry : snapshot.getChanges().entrySet()) {
+            int shard = shardOf(entry.getKey());
+            Map<UUID, IslandNpcRecord> changes = split.get(shard);
+            if (changes == null) {
+                changes = new LinkedHashMap<>();
+                split.set(shard, changes);
+            }
+            changes.put(entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (split.get(i) != null) {
+                shards[i].enqueue(new NpcDataSnapshot(snapshot.getVersion(), split.get(i)));
+            }
+        }
+        enqueuedVersion = snapshot.getVersion();
+    }
+
+    @Override
+    public boolean hasPending() {
+        for (NpcRecordLog shard : shards) {
+            if (shard.hasPending()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getWrittenVersion() {
+        return writtenVersion;
+    }
+
+    /**
+     * 并行写入所有有待写快照的分片，全部成功后才推进已写入版本
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (executor == null) {
+            return;
+        }
+        long target = enqueuedVersion;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (NpcRecordLog shard : shards) {
+            if (shard.hasPending()) {
+                tasks.add(() -> {
+                    shard.flush();
+                    return null;
+                });
+            }
+        }
+        invokeAll(tasks);
+        writtenVersion = target;
+    }
+
+    @Override
+    public boolean needsCompaction() {
+        for (NpcRecordLog shard : shards) {
+            if (shard.needsCompaction()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 并行压缩需要压缩的分片
+     */
+    @Override
+    public synchronized void compact() throws IOException {
+        if (executor == null) {
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (NpcRecordLog shard : shards) {
+            if (shard.needsCompaction()) {
+                tasks.add(() -> {
+                    shard.compact();
+                    return null;
+                });
+            }
+        }
+        invokeAll(tasks);
+    }
+
+    /**
+     * 按分片拆分后并行重写所有分片，各分片丢弃已包含在重写数据中的等待中快照
+     */
+    @Override
+    public synchronized void rewrite(Collection<IslandNpcRecord> records, long version) throws IOException {
+        if (executor == null) {
+            return;
+        }
+        List<List<IslandNpcRecord>> split = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            split.add(new ArrayList<>());
+        }
+        for (IslandNpcRecord record : records) {
+            split.get(shardOf(record.getIslandUUID())).add(record);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            NpcRecordLog shard = shards[i];
+            List<IslandNpcRecord> shardRecords = split.get(i);
+            tasks.add(() -> {
+                shard.rewrite(shardRecords, version);
+                return null;
+            });
+        }
+        invokeAll(tasks);
+        if (version > writtenVersion) {
+            writtenVersion = version;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+
+        IOException failure = null;
+        for (NpcRecordLog shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 岛屿所属的分片（按UUID最高位前缀，岛屿UUID为随机生成，分布均匀）
+     */
+    int shardOf(UUID islandUUID) {
+        return (int) ((islandUUID.getMostSignificantBits() >>> 32) % shards.length);
+    }
+
+    private File shardFile(int index) {
+        return new File(directory, String.format("%s%02x%s", SHARD_PREFIX, index, SHARD_SUFFIX));
+    }
+
+    /**
+     * 查找编号超出当前分片数量的分片文件
+     */
+    private List<NpcRecordLog> findOrphanShards() {
+        List<NpcRecordLog> orphans = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SHARD_PREFIX) && name.endsWith(SHARD_SUFFIX));
+        if (files == null) {
+            return orphans;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                int index = Integer.parseInt(name.substring(SHARD_PREFIX.length(), name.length() - SHARD_SUFFIX.length()), 16);
+                if (index >= shards.length) {
+                    orphans.add(new NpcRecordLog(plugin.getLogger(), file));
+                }
+            } catch (NumberFormatException e) {
+                plugin.getLogger().warning("忽略无法识别的分片文件: " + name);
+            }
+        }
+        return orphans;
+    }
+
+    /**
+     * 在线程池中执行所有任务并等待完成，任何一个失败都会抛出（其余任务仍会执行完）
+     */
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.isEmpty()) {
+            return results;
+        }
+        List<Future<T>> futures;
+        try {
+            futures = executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("NPC数据分片任务被中断", e);
+        }
+
+        IOException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("NPC数据分片任务被中断", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (failure == null) {
+                    failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+}
@@ -0,0 +1,290 @@
+package com.magicbili.islandnpc.storage;
+
+import com.magicbili.islandnpc.IslandNpcPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 基于嵌入式 SQLite 的 NPC 数据存储（npcdata.db）
+ * 每个岛屿一行，变更按岛屿 UPSERT / DELETE，每个快照在一个事务中批量提交
+ * 插件只按主键读写，表上不建二级索引，避免每次 UPSERT 额外维护索引
+ *
+ * SQLite 驱动由服务端自带（org.sqlite.JDBC），插件不额外打包
+ *
+ * @author magicbili
+ */
+public class SqliteNpcStorage implements NpcStorage {
+
+    private static final String TABLE = "island_npcs";
+
+    private static final String SQL_CREATE_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+        + "island_uuid TEXT PRIMARY KEY NOT NULL, "
+        + "world TEXT, "
+        + "x REAL NOT NULL DEFAULT 0, "
+        + "y REAL NOT NULL DEFAULT 0, "
+        + "z REAL NOT NULL DEFAULT 0, "
+        + "yaw REAL NOT NULL DEFAULT 0, "
+        + "pitch REAL NOT NULL DEFAULT 0, "
+        + "hidden INTEGER NOT NULL DEFAULT 0, "
+        + "slime_world INTEGER, "
+        + "npc_id TEXT, "
+        + "dialog_id TEXT)";
+
+    private static final String SQL_SELECT_ALL = "SELECT island_uuid, world, x, y, z, yaw, pitch, "
+        + "hidden, slime_world, npc_id, dialog_id FROM " + TABLE;
+    private static final String SQL_UPSERT = "INSERT INTO " + TABLE
+        + " (island_uuid, world, x, y, z, yaw, pitch, hidden, slime_world, npc_id, dialog_id)"
+        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+        + " ON CONFLICT(island_uuid) DO UPDATE SET world = excluded.world, x = excluded.x, y = excluded.y,"
+        + " z = excluded.z, yaw = excluded.yaw, pitch = excluded.pitch, hidden = excluded.hidden,"
+        + " slime_world = excluded.slime_world, npc_id = excluded.npc_id, dialog_id = excluded.dialog_id";
+    private static final String SQL_DELETE = "DELETE FROM " + TABLE + " WHERE island_uuid = ?";
+    private static final String SQL_DELETE_ALL = "DELETE FROM " + TABLE;
+
+    private final IslandNpcPlugin plugin;
+    private final File file;
+    private final Queue<NpcDataSnapshot> pending = new ConcurrentLinkedQueue<>();
+    private Connection connection;
+    private volatile long writtenVersion;
+
+    public SqliteNpcStorage(IslandNpcPlugin plugin, File file) {
+        this.plugin = plugin;
+        this.file = file;
+    }
+
+    @Override
+    public String getName() {
+        return file.getName();
+    }
+
+    @Override
+    public boolean exists() {
+        return file.exists();
+    }
+
+    @Override
+    public synchronized long open(Map<UUID, IslandNpcRecord> records) throws IOException {
+        close();
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new IOException("服务端未提供 SQLite 驱动 (org.sqlite.JDBC)", e);
+        }
+
+        long count = 0;
+        try {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                // WAL 模式下写事务只追加到 -wal 文件，崩溃后自动恢复到最后一次提交
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute(SQL_CREATE_TABLE);
+            }
+            connection.setAutoCommit(false);
+
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(SQL_SELECT_ALL)) {
+                while (rs.next()) {
+                    IslandNpcRecord record = readRecord(rs);
+                    if (record != null) {
+                        records.put(record.getIslandUUID(), record);
+                        count++;
+                    }
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            closeQuietly();
+            throw new IOException("无法打开 " + getName() + ": " + e.getMessage(), e);
+        }
+        return count;
+    }
+
+    @Override
+    public void enqueue(NpcDataSnapshot snapshot) {
+        pending.add(snapshot);
+    }
+
+    @Override
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public long getWrittenVersion() {
+        return writtenVersion;
+    }
+
+    /**
+     * 每个快照在一个事务中写入：UPSERT 和 DELETE 各自批量执行
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (connection == null) {
+            return;
+        }
+        NpcDataSnapshot snapshot;
+        while ((snapshot = pending.peek()) != null) {
+            try (PreparedStatement upsert = connection.prepareStatement(SQL_UPSERT);
+                 PreparedStatement delete = connection.prepareStatement(SQL_DELETE)) {
+                boolean hasUpserts = false;
+                boolean hasDeletes = false;
+                for (Map.Entry<UUID, IslandNpcRecord> entry : snapshot.getChanges().entrySet()) {
+                    if (entry.getValue() != null) {
+                        bindRecord(upsert, entry.getValue());
+                        upsert.addBatch();
+                        hasUpserts = true;
+                    } else {
+                        delete.setString(1, entry.getKey().toString());
+                        delete.addBatch();
+                        hasDeletes = true;
+                    }
+                }
+                if (hasUpserts) {
+                    upsert.executeBatch();
+                }
+                if (hasDeletes) {
+                    delete.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                rollbackQuietly();
+                throw new IOException("写入 " + getName() + " 失败: " + e.getMessage(), e);
+            }
+
+            // 提交成功后才移出队列，失败时下次重试
+            pending.poll();
+            writtenVersion = snapshot.getVersion();
+        }
+    }
+
+    /**
+     * SQLite 会复用已删除行的空间，不需要定期整理
+     */
+    @Override
+    public boolean needsCompaction() {
+        return false;
+    }
+
+    @Override
+    public synchronized void compact() throws IOException {
+        // 无需整理
+    }
+
+    /**
+     * 在一个事务中清空并写入所有记录，之后丢弃已包含在其中的等待中快照
+     * （比重写的数据旧，重写后再写入会还原已修改的岛屿或恢复已删除的岛屿）
+     */
+    @Override
+    public synchronized void rewrite(Collection<IslandNpcRecord> records, long version) throws IOException {
+        if (connection == null) {
+            return;
+        }
+        try (Statement clear = connection.createStatement();
+             PreparedStatement upsert = connection.prepareStatement(SQL_UPSERT)) {
+            clear.executeUpdate(SQL_DELETE_ALL);
+            for (IslandNpcRecord record : records) {
+                bindRecord(upsert, record);
+                upsert.addBatch();
+            }
+            upsert.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            rollbackQuietly();
+            throw new IOException("重写 " + getName() + " 失败: " + e.getMessage(), e);
+        }
+        pending.removeIf(snapshot -> snapshot.getVersion() <= version);
+        if (version > writtenVersion) {
+            writtenVersion = version;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException("关闭 " + getName() + " 失败: " + e.getMessage(), e);
+        } finally {
+            connection = null;
+        }
+    }
+
+    private void bindRecord(PreparedStatement statement, IslandNpcRecord record) throws SQLException {
+        statement.setString(1, record.getIslandUUID().toString());
+        statement.setString(2, record.getWorldName());
+        statement.setDouble(3, record.getX());
+        statement.setDouble(4, record.getY());
+        statement.setDouble(5, record.getZ());
+        statement.setFloat(6, record.getYaw());
+        statement.setFloat(7, record.getPitch());
+        statement.setInt(8, record.isHidden() ? 1 : 0);
+        if (record.getSlimeWorld() != null) {
+            statement.setInt(9, record.getSlimeWorld() ? 1 : 0);
+        } else {
+            statement.setNull(9, Types.INTEGER);
+        }
+        statement.setString(10, record.getNpcId());
+        statement.setString(11, record.getDialogId());
+    }
+
+    private IslandNpcRecord readRecord(ResultSet rs) throws SQLException {
+        UUID islandUUID;
+        try {
+            islandUUID = UUID.fromString(rs.getString("island_uuid"));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning(getName() + " 中有无效的岛屿UUID: " + rs.getString("island_uuid"));
+            return null;
+        }
+        int slimeWorld = rs.getInt("slime_world");
+        Boolean slime = rs.wasNull() ? null : slimeWorld != 0;
+        return new IslandNpcRecord(
+            islandUUID,
+            rs.getString("world"),
+            rs.getDouble("x"),
+            rs.getDouble("y"),
+            rs.getDouble("z"),
+            rs.getFloat("yaw"),
+            rs.getFloat("pitch"),
+            rs.getInt("hidden") != 0,
+            slime,
+            rs.getString("npc_id"),
+            rs.getString("dialog_id")
+        );
+    }
+
+    private void rollbackQuietly() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            plugin.getLogger().warning("回滚 " + getName() + " 事务失败: " + e.getMessage());
+        }
+    }
+
+    private void closeQuietly() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // 已经在处理打开失败
+            }
+            connection = null;
+        }
+    }
+}
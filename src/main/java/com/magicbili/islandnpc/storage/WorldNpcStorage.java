@@ -0,0 +1,135 @@
+package com.magicbili.islandnpc.storage;
+
+import com.magicbili.islandnpc.IslandNpcPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 把 SlimeWorld 岛屿的 NPC 记录保存在世界自己的 PersistentDataContainer 中
+ * 记录随 SlimeWorld 一起保存和加载，世界加载时直接从世界读取，不需要查询全局存储，
+ * 全局存储也不再随 SlimeWorld 岛屿数量增长
+ *
+ * 每个岛屿一个键 islandnpc:npc_&lt;岛屿UUID&gt;，值与 npcdata.log 的记录格式相同（256 字节，带 CRC32）
+ * 只在主线程访问
+ *
+ * @author magicbili
+ */
+public class WorldNpcStorage {
+
+    private static final String KEY_PREFIX = "npc_";
+
+    private final IslandNpcPlugin plugin;
+    // 记录保存在世界中（而不是全局存储）的岛屿
+    private final Set<UUID> worldStored = new HashSet<>();
+
+    public WorldNpcStorage(IslandNpcPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 记录是否应保存在世界中：SlimeWorld 岛屿且世界已加载
+     */
+    public boolean accepts(IslandNpcRecord record) {
+        return Boolean.TRUE.equals(record.getSlimeWorld()) && record.hasLocation()
+            && Bukkit.getWorld(record.getWorldName()) != null;
+    }
+
+    /**
+     * 岛屿的记录是否保存在世界中
+     */
+    public boolean isWorldStored(UUID islandUUID) {
+        return worldStored.contains(islandUUID);
+    }
+
+    /**
+     * 写入记录到所在世界（世界未加载时不写入）
+     * @return 是否写入成功
+     */
+    public boolean write(IslandNpcRecord record) {
+        World world = record.hasLocation() ? Bukkit.getWorld(record.getWorldName()) : null;
+        if (world == null) {
+            return false;
+        }
+        byte[] bytes = NpcRecordLog.toBytes(record);
+        world.getPersistentDataContainer().set(keyOf(record.getIslandUUID()), PersistentDataType.BYTE_ARRAY, bytes);
+        worldStored.add(record.getIslandUUID());
+        return true;
+    }
+
+    /**
+     * 从世界中删除岛屿的记录
+     * @param record 岛屿当前的记录（用于确定所在世界）
+     */
+    public void remove(IslandNpcRecord record) {
+        worldStored.remove(record.getIslandUUID());
+        World world = record.hasLocation() ? Bukkit.getWorld(record.getWorldName()) : null;
+        if (world != null) {
+            world.getPersistentDataContainer().remove(keyOf(record.getIslandUUID()));
+        }
+    }
+
+    /**
+     * 读取世界中保存的所有岛屿记录
+     * 校验失败的记录会被忽略
+     * @return 记录列表
+     */
+    public List<IslandNpcRecord> load(World world) {
+        List<IslandNpcRecord> records = new ArrayList<>();
+        PersistentDataContainer container = world.getPersistentDataContainer();
+        String namespace = plugin.getName().toLowerCase();
+        for (NamespacedKey key : new ArrayList<>(container.getKeys())) {
+            if (!namespace.equals(key.getNamespace()) || !key.getKey().startsWith(KEY_PREFIX)) {
+                continue;
+            }
+            byte[] bytes = container.get(key, PersistentDataType.BYTE_ARRAY);
+            IslandNpcRecord record = NpcRecordLog.fromBytes(bytes);
+            if (record == null || !key.equals(keyOf(record.getIslandUUID()))) {
+                plugin.getLogger().warning("世界 " + world.getName() + " 中的NPC记录 " + key.getKey() + " 无效，已忽略");
+                continue;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * 标记岛屿的记录保存在世界中（从世界加载后调用）
+     */
+    public void markWorldStored(UUID islandUUID) {
+        worldStored.add(islandUUID);
+    }
+
+    /**
+     * 世界卸载后取消标记，记录仍保存在世界中
+     */
+    public void forget(UUID islandUUID) {
+        worldStored.remove(islandUUID);
+    }
+
+    /**
+     * 删除世界中的记录（不修改标记，用于清理过期记录）
+     */
+    public void removeKey(World world, UUID islandUUID) {
+        world.getPersistentDataContainer().remove(keyOf(islandUUID));
+    }
+
+    /**
+     * 获取记录保存在世界中的岛屿数量
+     */
+    public int size() {
+        return worldStored.size();
+    }
+
+    private NamespacedKey keyOf(UUID islandUUID) {
+        return new NamespacedKey(plugin, KEY_PREFIX + islandUUID);
+    }
+}
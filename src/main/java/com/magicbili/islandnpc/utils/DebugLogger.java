@@ -0,0 +1,118 @@
+package com.magicbili.islandnpc.utils;
+
+import com.magicbili.islandnpc.IslandNpcPlugin;
+import com.magicbili.islandnpc.config.ConfigSnapshot;
+
+import java.util.function.Supplier;
+
+/**
+ * 按类别输出的Debug日志
+ * 是否输出由配置快照中缓存的类别级别决定（debug 和 log-levels），
+ * 消息使用 {} 占位符或 Supplier，只有在类别启用时才拼接字符串，关闭时不做任何格式化
+ *
+ * 参数较多或需要计算的消息应先判断 isEnabled()，避免装箱和可变参数数组
+ *
+ * @author magicbili
+ */
+public final class DebugLogger {
+
+    /**
+     * 日志类别，配置键为小写名称（log-levels.&lt;类别&gt;）
+     */
+    public enum Category {
+        NPC,
+        WORLD,
+        CHUNK,
+        INTERACT,
+        ISLAND,
+        STORAGE,
+        STARTUP;
+
+        public String getKey() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final IslandNpcPlugin plugin;
+    private final Category category;
+    private final String prefix;
+
+    /**
+     * @param plugin 插件实例
+     * @param category 日志类别
+     * @param tag 输出在 [DEBUG] 之后的标签，例如 "[交互] "，不需要时为空字符串
+     */
+    public DebugLogger(IslandNpcPlugin plugin, Category category, String tag) {
+        this.plugin = plugin;
+        this.category = category;
+        this.prefix = "[DEBUG] " + tag;
+    }
+
+    /**
+     * 类别是否启用Debug输出
+     */
+    public boolean isEnabled() {
+        ConfigSnapshot snapshot = plugin.getConfigManager().getSnapshot();
+        return snapshot != null && snapshot.isDebugEnabled(category);
+    }
+
+    public void debug(String message) {
+        if (isEnabled()) {
+            log(message);
+        }
+    }
+
+    public void debug(String format, Object arg) {
+        if (isEnabled()) {
+            log(format(format, arg));
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (isEnabled()) {
+            log(format(format, arg1, arg2));
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled()) {
+            log(format(format, arg1, arg2, arg3));
+        }
+    }
+
+    public void debug(String format, Object... args) {
+        if (isEnabled()) {
+            log(format(format, args));
+        }
+    }
+
+    /**
+     * 消息需要额外计算时使用
+     */
+    public void debug(Supplier<String> message) {
+        if (isEnabled()) {
+            log(message.get());
+        }
+    }
+
+    private void log(String message) {
+        plugin.getLogger().info(prefix + message);
+    }
+
+    /**
+     * 依次用参数替换 {} 占位符，多余的参数忽略
+     */
+    static String format(String format, Object... args) {
+        StringBuilder builder = new StringBuilder(format.length() + args.length * 16);
+        int start = 0;
+        for (Object arg : args) {
+            int index = format.indexOf("{}", start);
+            if (index < 0) {
+                break;
+            }
+            builder.append(format, start, index).append(arg);
+            start = index + 2;
+        }
+        return builder.append(format, start, format.length()).toString();
+    }
+}
@@ -0,0 +1,82 @@
+package com.magicbili.islandnpc.config;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ConfigDiff 变更分类测试
+ *
+ * @author magicbili
+ */
+class ConfigDiffTest {
+
+    private static final Logger LOGGER = Logger.getLogger(ConfigDiffTest.class.getName());
+
+    private static ConfigSnapshot snapshot(Object... entries) {
+        YamlConfiguration config = new YamlConfiguration();
+        for (int i = 0; i + 1 < entries.length; i += 2) {
+            config.set((String) entries[i], entries[i + 1]);
+        }
+        return new ConfigSnapshot(config, LOGGER);
+    }
+
+    @Test
+    void identicalSnapshotsHaveNoChanges() {
+        ConfigDiff diff = ConfigDiff.between(snapshot("npc.skin", "Notch"), snapshot("npc.skin", "Notch"));
+
+        assertTrue(diff.isEmpty());
+        assertTrue(diff.getChangedKeys().isEmpty());
+    }
+
+    @Test
+    void skinChangeRespawnsNpcs() {
+        ConfigDiff diff = ConfigDiff.between(snapshot(), snapshot("npc.skin", "Notch"));
+
+        assertTrue(diff.isNpcAppearanceChanged());
+        assertFalse(diff.isNpcPlacementChanged());
+        assertEquals(List.of("npc.skin"), diff.getChangedKeys());
+    }
+
+    @Test
+    void spawnOffsetChangeOnlyMovesNpcs() {
+        ConfigDiff diff = ConfigDiff.between(snapshot(), snapshot("npc.spawn-offset.x", 2.0));
+
+        assertTrue(diff.isNpcPlacementChanged());
+        assertFalse(diff.isNpcAppearanceChanged());
+        assertFalse(diff.isHologramTextChanged());
+    }
+
+    @Test
+    void hologramChangesAreClassified() {
+        ConfigDiff text = ConfigDiff.between(snapshot(), snapshot("npc.hologram.lines", List.of("{owner}")));
+        ConfigDiff layout = ConfigDiff.between(snapshot(), snapshot("npc.hologram.view-range", 64));
+
+        assertTrue(text.isHologramTextChanged());
+        assertFalse(text.isHologramLayoutChanged());
+        assertTrue(layout.isHologramLayoutChanged());
+        assertFalse(layout.isHologramTextChanged());
+    }
+
+    @Test
+    void storageChangeRequiresRestart() {
+        ConfigDiff diff = ConfigDiff.between(snapshot(), snapshot("storage.type", "sqlite"));
+
+        assertEquals(List.of("storage.type"), diff.getRestartRequiredKeys());
+        assertFalse(diff.isNpcAppearanceChanged());
+    }
+
+    @Test
+    void messageChangeIsReported() {
+        ConfigDiff diff = ConfigDiff.between(snapshot("messages.reload", "a"), snapshot("messages.reload", "b"));
+
+        assertEquals(List.of("messages"), diff.getChangedKeys());
+        assertTrue(diff.getRestartRequiredKeys().isEmpty());
+    }
+}
@@ -0,0 +1,73 @@
+package com.magicbili.islandnpc.config;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MessageCatalog 模板编译和占位符替换测试
+ *
+ * @author magicbili
+ */
+class MessageCatalogTest {
+
+    private static MessageCatalog catalog(String... entries) {
+        YamlConfiguration config = new YamlConfiguration();
+        for (int i = 0; i + 1 < entries.length; i += 2) {
+            config.set("messages." + entries[i], entries[i + 1]);
+        }
+        return new MessageCatalog(config);
+    }
+
+    @Test
+    void rendersPlaceholdersInOrder() {
+        MessageCatalog messages = catalog("moved", "已将 {count} 个NPC移动到 {world}，共 {count} 个");
+
+        assertEquals("已将 3 个NPC移动到 world，共 3 个",
+            messages.render("moved", "world", "world", "count", "3"));
+    }
+
+    @Test
+    void missingValueKeepsPlaceholder() {
+        MessageCatalog messages = catalog("greet", "你好 {player}，岛屿 {island}");
+
+        assertEquals("你好 Steve，岛屿 {island}", messages.render("greet", "player", "Steve"));
+    }
+
+    @Test
+    void bracesWithWhitespaceAreNotPlaceholders() {
+        MessageCatalog messages = catalog("raw", "{a b} {x} {} {");
+
+        assertEquals("{a b} 1 {} {", messages.render("raw", "x", "1", "a b", "2"));
+    }
+
+    @Test
+    void translatesColorCodesAndPrefix() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("messages.prefix", "&a[NPC] ");
+        config.set("messages.done", "&7完成");
+        MessageCatalog messages = new MessageCatalog(config);
+
+        assertEquals("§a[NPC] ", messages.getPrefix());
+        assertEquals("§7完成", messages.get("done"));
+        assertEquals("§a[NPC] §7完成", messages.getWithPrefix("done"));
+    }
+
+    @Test
+    void unknownKeyReturnsKey() {
+        MessageCatalog messages = catalog();
+
+        assertEquals("missing.key", messages.get("missing.key"));
+        assertEquals("missing.key", messages.render("missing.key", "x", "1"));
+    }
+
+    @Test
+    void contentEqualsComparesTextAndPrefix() {
+        assertTrue(catalog("a", "1", "b", "2").contentEquals(catalog("b", "2", "a", "1")));
+        assertFalse(catalog("a", "1").contentEquals(catalog("a", "2")));
+        assertFalse(catalog("a", "1").contentEquals(catalog("a", "1", "b", "2")));
+    }
+}
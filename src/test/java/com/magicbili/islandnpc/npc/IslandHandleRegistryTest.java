@@ -0,0 +1,89 @@
+package com.magicbili.islandnpc.npc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * IslandHandleRegistry 句柄分配和删除测试
+ *
+ * @author magicbili
+ */
+class IslandHandleRegistryTest {
+
+    @Test
+    void handlesAreDenseAndStable() {
+        IslandHandleRegistry registry = new IslandHandleRegistry();
+        List<UUID> islands = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            UUID islandUUID = UUID.randomUUID();
+            islands.add(islandUUID);
+            assertEquals(i, registry.intern(islandUUID));
+        }
+
+        for (int i = 0; i < islands.size(); i++) {
+            assertEquals(i, registry.intern(islands.get(i)));
+            assertEquals(i, registry.find(islands.get(i)));
+            assertEquals(islands.get(i), registry.uuidOf(i));
+        }
+        assertEquals(1000, registry.size());
+        assertEquals(1000, registry.capacity());
+        assertEquals(-1, registry.find(UUID.randomUUID()));
+    }
+
+    @Test
+    void releasedHandleIsReused() {
+        IslandHandleRegistry registry = new IslandHandleRegistry();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        registry.intern(first);
+        int handle = registry.intern(second);
+
+        assertEquals(handle, registry.release(second));
+        assertEquals(-1, registry.release(second));
+        assertEquals(-1, registry.find(second));
+
+        UUID third = UUID.randomUUID();
+        assertEquals(handle, registry.intern(third));
+        assertEquals(third, registry.uuidOf(handle));
+        assertEquals(2, registry.capacity());
+    }
+
+    @Test
+    void deletesKeepProbeChainsReachable() {
+        IslandHandleRegistry registry = new IslandHandleRegistry();
+        Random random = new Random(42);
+        List<UUID> live = new ArrayList<>();
+        List<UUID> released = new ArrayList<>();
+        // 高位相同、低位只差几位，集中在少数探测链上
+        for (int i = 0; i < 5000; i++) {
+            UUID islandUUID = new UUID(7L, random.nextInt(64) | ((long) i << 6));
+            registry.intern(islandUUID);
+            live.add(islandUUID);
+        }
+        for (int i = 0; i < 20000; i++) {
+            if (!live.isEmpty() && random.nextBoolean()) {
+                UUID islandUUID = live.remove(random.nextInt(live.size()));
+                registry.release(islandUUID);
+                released.add(islandUUID);
+            } else {
+                UUID islandUUID = new UUID(random.nextLong(), random.nextLong());
+                registry.intern(islandUUID);
+                live.add(islandUUID);
+            }
+        }
+
+        assertEquals(live.size(), registry.size());
+        for (UUID islandUUID : live) {
+            assertEquals(islandUUID, registry.uuidOf(registry.find(islandUUID)));
+        }
+        for (UUID islandUUID : released) {
+            assertEquals(-1, registry.find(islandUUID));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.magicbili.islandnpc.npc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * NpcIdIndex 查找和删除测试
+ *
+ * @author magicbili
+ */
+class NpcIdIndexTest {
+
+    @Test
+    void putGetAndOverwrite() {
+        NpcIdIndex index = new NpcIdIndex();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        index.put(0, first);
+        index.put(-5, second);
+        assertEquals(first, index.get(0));
+        assertEquals(second, index.get(-5));
+        assertNull(index.get(1));
+
+        index.put(0, second);
+        assertEquals(second, index.get(0));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void removeReturnsRemovedIsland() {
+        NpcIdIndex index = new NpcIdIndex();
+        UUID islandUUID = UUID.randomUUID();
+        index.put(42, islandUUID);
+
+        assertEquals(islandUUID, index.remove(42));
+        assertNull(index.remove(42));
+        assertNull(index.get(42));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void deletesKeepProbeChainsReachable() {
+        NpcIdIndex index = new NpcIdIndex();
+        Map<Integer, UUID> expected = new HashMap<>();
+        Random random = new Random(7);
+        // Citizens 的 NPC ID 连续分配，删除和重建交替进行
+        for (int i = 0; i < 50000; i++) {
+            int npcId = random.nextInt(4096);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(npcId), index.remove(npcId));
+            } else {
+                UUID islandUUID = UUID.randomUUID();
+                expected.put(npcId, islandUUID);
+                index.put(npcId, islandUUID);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (int npcId = 0; npcId < 4096; npcId++) {
+            assertEquals(expected.get(npcId), index.get(npcId));
+        }
+    }
+
+    @Test
+    void clearRemovesEverything() {
+        NpcIdIndex index = new NpcIdIndex();
+        for (int npcId = 0; npcId < 100; npcId++) {
+            index.put(npcId, UUID.randomUUID());
+        }
+
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertNull(index.get(10));
+    }
+}
@@ -0,0 +1,115 @@
+package com.magicbili.islandnpc.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * NpcRecordIndex 按岛屿查询测试
+ *
+ * @author magicbili
+ */
+class NpcRecordIndexTest {
+
+    private static final Logger LOGGER = Logger.getLogger(NpcRecordIndexTest.class.getName());
+
+    @TempDir
+    Path dir;
+
+    private static IslandNpcRecord record(UUID islandUUID, double x) {
+        return new IslandNpcRecord(islandUUID, "world", x, 64, 0, 0f, 0f, false, null, null, null);
+    }
+
+    private static void write(NpcRecordLog log, long version, UUID islandUUID, IslandNpcRecord record) throws IOException {
+        Map<UUID, IslandNpcRecord> changes = new HashMap<>();
+        changes.put(islandUUID, record);
+        log.enqueue(new NpcDataSnapshot(version, changes));
+        log.flush();
+    }
+
+    /**
+     * 写入 count 个岛屿并重写日志（重写时生成索引）
+     */
+    private NpcRecordLog createLog(List<UUID> islands, int count) throws IOException {
+        NpcRecordLog log = new NpcRecordLog(LOGGER, dir.resolve("npcdata.log").toFile());
+        log.open(new HashMap<>());
+        List<IslandNpcRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UUID islandUUID = UUID.randomUUID();
+            islands.add(islandUUID);
+            records.add(record(islandUUID, i));
+        }
+        log.rewrite(records, 0);
+        return log;
+    }
+
+    @Test
+    void findsEveryIndexedIsland() throws IOException {
+        List<UUID> islands = new ArrayList<>();
+        NpcRecordLog log = createLog(islands, 500);
+
+        NpcRecordLookup lookup = log.openLookup();
+        assertNotNull(lookup);
+        for (int i = 0; i < islands.size(); i++) {
+            assertEquals(i, lookup.get(islands.get(i)).getX());
+        }
+        assertNull(lookup.get(UUID.randomUUID()));
+        lookup.close();
+        log.close();
+    }
+
+    @Test
+    void seesRecordsAppendedAfterTheIndexWasWritten() throws IOException {
+        List<UUID> islands = new ArrayList<>();
+        NpcRecordLog log = createLog(islands, 10);
+        NpcRecordLookup lookup = log.openLookup();
+        UUID created = UUID.randomUUID();
+
+        write(log, 1, islands.get(0), record(islands.get(0), 100));
+        assertEquals(100, lookup.get(islands.get(0)).getX());
+
+        // 第一次查询之后追加的记录同样可见
+        write(log, 2, created, record(created, 200));
+        write(log, 3, islands.get(1), null);
+        assertEquals(200, lookup.get(created).getX());
+        assertNull(lookup.get(islands.get(1)));
+        assertEquals(2, lookup.get(islands.get(2)).getX());
+        lookup.close();
+        log.close();
+    }
+
+    @Test
+    void staleIndexIsNotUsed() throws IOException {
+        List<UUID> islands = new ArrayList<>();
+        NpcRecordLog log = createLog(islands, 10);
+        // 代数与日志不一致的索引
+        NpcRecordIndex.write(dir.resolve("npcdata.log.idx"), islands, 24, log.getGeneration() + 1);
+
+        assertNull(log.openLookup());
+        log.close();
+    }
+
+    @Test
+    void closedLookupReturnsNothing() throws IOException {
+        List<UUID> islands = new ArrayList<>();
+        NpcRecordLog log = createLog(islands, 10);
+        NpcRecordLookup lookup = log.openLookup();
+
+        lookup.close();
+
+        assertNull(lookup.get(islands.get(0)));
+        log.close();
+    }
+}
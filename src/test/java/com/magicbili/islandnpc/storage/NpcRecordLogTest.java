@@ -0,0 +1,231 @@
+package com.magicbili.islandnpc.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * NpcRecordLog 记录编码、重放、压缩和损坏恢复测试
+ *
+ * @author magicbili
+ */
+class NpcRecordLogTest {
+
+    // 文件头长度，第一条记录从这里开始
+    private static final int HEADER_SIZE = 24;
+
+    private static final Logger LOGGER = Logger.getLogger(NpcRecordLogTest.class.getName());
+
+    @TempDir
+    Path dir;
+
+    private NpcRecordLog newLog() {
+        return new NpcRecordLog(LOGGER, dir.resolve("npcdata.log").toFile());
+    }
+
+    private static IslandNpcRecord record(UUID islandUUID, String world, double x) {
+        return new IslandNpcRecord(islandUUID, world, x, 64, 0, 180f, 0f, false, null, null, null);
+    }
+
+    private static void write(NpcRecordLog log, long version, Map<UUID, IslandNpcRecord> changes) throws IOException {
+        log.enqueue(new NpcDataSnapshot(version, changes));
+        log.flush();
+    }
+
+    private static Map<UUID, IslandNpcRecord> changes(IslandNpcRecord... records) {
+        Map<UUID, IslandNpcRecord> changes = new LinkedHashMap<>();
+        for (IslandNpcRecord record : records) {
+            changes.put(record.getIslandUUID(), record);
+        }
+        return changes;
+    }
+
+    private long countCorruptFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("npcdata.log.corrupt-")).count();
+        }
+    }
+
+    private void overwrite(long position, byte value) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve("npcdata.log"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {value}), position);
+        }
+    }
+
+    @Test
+    void encodeDecodeKeepsAllFields() {
+        IslandNpcRecord record = new IslandNpcRecord(UUID.randomUUID(), "空岛_world", 1.5, -60.25, 1e7,
+            90f, -12.5f, true, true, "npc-1", "dialog_main");
+
+        IslandNpcRecord decoded = NpcRecordLog.fromBytes(NpcRecordLog.toBytes(record));
+
+        assertEquals(record, decoded);
+        assertEquals("空岛_world", decoded.getWorldName());
+        assertEquals(Boolean.TRUE, decoded.getSlimeWorld());
+        assertTrue(decoded.isHidden());
+    }
+
+    @Test
+    void recordWithoutLocationDecodesWithoutWorld() {
+        IslandNpcRecord record = new IslandNpcRecord(UUID.randomUUID(), null, 0, 0, 0, 0f, 0f, true, null, null, null);
+
+        IslandNpcRecord decoded = NpcRecordLog.fromBytes(NpcRecordLog.toBytes(record));
+
+        assertFalse(decoded.hasLocation());
+        assertNull(decoded.getSlimeWorld());
+        assertNull(decoded.getDialogId());
+    }
+
+    @Test
+    void checksumMismatchIsRejected() {
+        byte[] bytes = NpcRecordLog.toBytes(record(UUID.randomUUID(), "world", 0));
+        bytes[60] ^= 1;
+
+        assertNull(NpcRecordLog.fromBytes(bytes));
+        assertFalse(NpcRecordLog.isValid(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    void overLongStringsAreRejectedInsteadOfTruncated() {
+        // 21 个汉字 = 63 字节，刚好放得下
+        String longest = "岛".repeat(21);
+        IslandNpcRecord fits = record(UUID.randomUUID(), longest, 0);
+        NpcRecordLog.checkEncodable(fits);
+        assertEquals(longest, NpcRecordLog.fromBytes(NpcRecordLog.toBytes(fits)).getWorldName());
+
+        IslandNpcRecord tooLong = record(UUID.randomUUID(), "岛".repeat(22), 0);
+        assertThrows(IllegalArgumentException.class, () -> NpcRecordLog.checkEncodable(tooLong));
+        assertThrows(IllegalArgumentException.class, () -> NpcRecordLog.toBytes(tooLong));
+
+        IslandNpcRecord longDialog = new IslandNpcRecord(UUID.randomUUID(), "world", 0, 0, 0, 0f, 0f,
+            false, null, null, "d".repeat(64));
+        assertThrows(IllegalArgumentException.class, () -> NpcRecordLog.checkEncodable(longDialog));
+    }
+
+    @Test
+    void reopenReplaysLatestRecordPerIsland() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        NpcRecordLog log = newLog();
+        log.open(new HashMap<>());
+        write(log, 1, changes(record(first, "world", 0), record(second, "world", 16)));
+        Map<UUID, IslandNpcRecord> update = changes(record(first, "world", 32));
+        update.put(second, null);
+        write(log, 2, update);
+        log.close();
+
+        Map<UUID, IslandNpcRecord> replayed = new HashMap<>();
+        long records = newLog().open(replayed);
+
+        assertEquals(4, records);
+        assertEquals(1, replayed.size());
+        assertEquals(32, replayed.get(first).getX());
+        assertEquals(2, log.getWrittenVersion());
+    }
+
+    @Test
+    void compactKeepsOnlyLatestRecords() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        NpcRecordLog log = newLog();
+        log.open(new HashMap<>());
+        for (int i = 0; i < 10; i++) {
+            write(log, i + 1, changes(record(first, "world", i), record(second, "world_nether", -i)));
+        }
+        long generation = log.getGeneration();
+
+        log.compact();
+        log.close();
+
+        assertEquals(generation + 1, log.getGeneration());
+        assertEquals(HEADER_SIZE + 2L * NpcRecordLog.RECORD_SIZE, Files.size(dir.resolve("npcdata.log")));
+        assertTrue(Files.exists(dir.resolve("npcdata.log.prev")));
+        Map<UUID, IslandNpcRecord> replayed = new HashMap<>();
+        newLog().open(replayed);
+        assertEquals(9, replayed.get(first).getX());
+        assertEquals(-9, replayed.get(second).getX());
+    }
+
+    @Test
+    void damagedHeaderFallsBackToPreviousGeneration() throws IOException {
+        UUID compacted = UUID.randomUUID();
+        UUID appended = UUID.randomUUID();
+        NpcRecordLog log = newLog();
+        log.open(new HashMap<>());
+        write(log, 1, changes(record(compacted, "world", 0)));
+        log.compact();
+        write(log, 2, changes(record(appended, "world", 0)));
+        log.close();
+
+        overwrite(0, (byte) 0);
+        Map<UUID, IslandNpcRecord> replayed = new HashMap<>();
+        newLog().open(replayed);
+
+        // 上一代是压缩前的文件，之后追加的记录随损坏的文件一起丢失
+        assertTrue(replayed.containsKey(compacted));
+        assertFalse(replayed.containsKey(appended));
+        assertEquals(1, countCorruptFiles());
+    }
+
+    @Test
+    void corruptRecordIsSkippedAndQuarantined() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID damaged = UUID.randomUUID();
+        UUID last = UUID.randomUUID();
+        NpcRecordLog log = newLog();
+        log.open(new HashMap<>());
+        write(log, 1, changes(record(first, "world", 0), record(damaged, "world", 16), record(last, "world", 32)));
+        log.close();
+
+        overwrite(HEADER_SIZE + NpcRecordLog.RECORD_SIZE + 100, (byte) 0x7F);
+        Map<UUID, IslandNpcRecord> replayed = new HashMap<>();
+        NpcRecordLog reopened = newLog();
+        reopened.open(replayed);
+        reopened.close();
+
+        assertTrue(replayed.containsKey(first));
+        assertFalse(replayed.containsKey(damaged));
+        assertTrue(replayed.containsKey(last));
+        assertEquals(1, countCorruptFiles());
+
+        // 隔离后日志已被压缩，再次打开不会重复隔离
+        newLog().open(new HashMap<>());
+        assertEquals(1, countCorruptFiles());
+    }
+
+    @Test
+    void partialTrailingRecordIsTruncated() throws IOException {
+        UUID islandUUID = UUID.randomUUID();
+        NpcRecordLog log = newLog();
+        log.open(new HashMap<>());
+        write(log, 1, changes(record(islandUUID, "world", 0)));
+        log.close();
+        Path file = dir.resolve("npcdata.log");
+        Files.write(file, new byte[100], StandardOpenOption.APPEND);
+
+        Map<UUID, IslandNpcRecord> replayed = new HashMap<>();
+        newLog().open(replayed);
+
+        assertTrue(replayed.containsKey(islandUUID));
+        assertEquals(HEADER_SIZE + NpcRecordLog.RECORD_SIZE, Files.size(file));
+        assertEquals(0, countCorruptFiles());
+    }
+}
@@ -0,0 +1,108 @@
+package com.magicbili.islandnpc.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * NpcRecordStore 测试
+ *
+ * @author magicbili
+ */
+class NpcRecordStoreTest {
+
+    private static IslandNpcRecord record(UUID islandUUID, String world, double x) {
+        return new IslandNpcRecord(islandUUID, world, x, 64, 0, 0f, 0f, false, null, null, null);
+    }
+
+    @Test
+    void putReplacesPreviousRecord() {
+        UUID islandUUID = UUID.randomUUID();
+        NpcRecordStore store = new NpcRecordStore();
+        IslandNpcRecord first = record(islandUUID, "world", 0);
+        IslandNpcRecord second = record(islandUUID, "world", 16);
+
+        assertNull(store.put(first));
+        assertSame(first, store.put(second));
+
+        assertSame(second, store.get(islandUUID));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void removeAndClear() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        NpcRecordStore store = new NpcRecordStore();
+        store.putAll(List.of(record(first, "world", 0), record(second, "world", 16)));
+
+        assertEquals(0, store.remove(first).getX());
+        assertNull(store.remove(first));
+        assertFalse(store.contains(first));
+        assertTrue(store.getIslandUUIDs().contains(second));
+
+        store.clear();
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void deleteBeforeLoadIsNotRestoredByLoadedData() {
+        UUID deleted = UUID.randomUUID();
+        UUID kept = UUID.randomUUID();
+
+        // 加载期间删除了只存在于磁盘上的岛屿
+        NpcRecordStore current = new NpcRecordStore();
+        NpcRecordStore loaded = new NpcRecordStore();
+        loaded.put(record(deleted, "world", 0));
+        loaded.put(record(kept, "world", 16));
+
+        current.replaceWith(loaded, Set.of(deleted));
+
+        assertNull(current.get(deleted));
+        assertFalse(current.getIslandsInWorld("world").contains(deleted));
+        assertFalse(current.getIslandsInChunk("world", 0, 0).contains(deleted));
+        assertEquals(1, current.size());
+        assertTrue(current.contains(kept));
+    }
+
+    @Test
+    void recordWrittenAfterDeleteDuringLoadWins() {
+        UUID islandUUID = UUID.randomUUID();
+
+        // 加载期间先删除再重新创建
+        NpcRecordStore current = new NpcRecordStore();
+        current.put(record(islandUUID, "world_new", 100));
+        NpcRecordStore loaded = new NpcRecordStore();
+        loaded.put(record(islandUUID, "world", 0));
+
+        current.replaceWith(loaded, Set.of(islandUUID));
+
+        assertEquals("world_new", current.get(islandUUID).getWorldName());
+        assertEquals(100, current.get(islandUUID).getX());
+        assertFalse(current.getIslandsInWorld("world").contains(islandUUID));
+    }
+
+    @Test
+    void recordsWrittenDuringLoadOverrideLoadedData() {
+        UUID islandUUID = UUID.randomUUID();
+
+        NpcRecordStore current = new NpcRecordStore();
+        current.put(record(islandUUID, "world", 32));
+        NpcRecordStore loaded = new NpcRecordStore();
+        loaded.put(record(islandUUID, "world", 0));
+
+        current.replaceWith(loaded, Collections.emptySet());
+
+        assertEquals(32, current.get(islandUUID).getX());
+        assertEquals(0, loaded.size());
+    }
+}
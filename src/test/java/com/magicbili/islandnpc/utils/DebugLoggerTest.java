@@ -0,0 +1,42 @@
+package com.magicbili.islandnpc.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * DebugLogger 占位符格式化测试
+ *
+ * @author magicbili
+ */
+class DebugLoggerTest {
+
+    @Test
+    void fillsPlaceholdersInOrder() {
+        assertEquals("岛屿 a 在 world 生成了 2 个NPC",
+            DebugLogger.format("岛屿 {} 在 {} 生成了 {} 个NPC", "a", "world", 2));
+    }
+
+    @Test
+    void extraArgumentsAreIgnored() {
+        assertEquals("x=1", DebugLogger.format("x={}", 1, 2, 3));
+    }
+
+    @Test
+    void missingArgumentsKeepPlaceholders() {
+        assertEquals("x=1 y={}", DebugLogger.format("x={} y={}", 1));
+        assertEquals("无参数 {}", DebugLogger.format("无参数 {}"));
+    }
+
+    @Test
+    void nullArgumentPrintsNull() {
+        assertEquals("value=null", DebugLogger.format("value={}", (Object) null));
+    }
+
+    @Test
+    void categoryKeysAreLowercase() {
+        for (DebugLogger.Category category : DebugLogger.Category.values()) {
+            assertEquals(category.name().toLowerCase(), category.getKey());
+        }
+    }
+}